@@ -0,0 +1,152 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Mask kernels written with the incubating Vector API. Each step works on a 256 bit
+ * vector (4 longs) of a mask, or 128 bits for masks of at most 2 longs, so a whole Duo
+ * board mask takes one step and testing a placement against the forbidden and anchor
+ * masks is two vector ANDs. Longer masks, such as the 7 longs of the 20x20 Classic board,
+ * take as many whole vectors as fit and finish the last few longs one at a time.
+ * Only whole vectors are loaded because masked loads are much slower on many CPUs.
+ *
+ * This class is kept out of the main source folder because it needs the
+ * jdk.incubator.vector module to build and run:
+ *
+ *   javac --add-modules jdk.incubator.vector -cp out -d out src-vector/VectorKernels.java
+ *   java --add-modules jdk.incubator.vector -Dblokus.kernels=vector -cp out ServerMain
+ *
+ * MaskKernels falls back to ScalarKernels when it is missing.
+ */
+public class VectorKernels implements MaskKernels
+{
+    /**
+     * Returns the vector shape to use for a mask: 128 bits for masks of at most 2 longs,
+     * otherwise 256 bits when the CPU has them
+     * @param words - number of longs per mask
+     * @return - the vector shape to use
+     */
+    private static VectorSpecies<Long> species(int words)
+    {
+        if(words <= 2 || LongVector.SPECIES_PREFERRED.length() < 4)
+            return LongVector.SPECIES_128;
+        return LongVector.SPECIES_256;
+    }
+
+    /**
+     * Returns if a placement covers no forbidden cell and at least one anchor, see MaskKernels
+     */
+    public boolean isLegal(long[] footprints, int off, long[] state, int forbidden, int anchors, int words)
+    {
+        VectorSpecies<Long> species = species(words);
+        int body = species.loopBound(words);
+        boolean touchesAnchor = false;
+        for(int w=0; w<body; w+=species.length())
+        {
+            LongVector f = LongVector.fromArray(species, footprints, off + w);
+            if(f.and(LongVector.fromArray(species, state, forbidden + w)).compare(VectorOperators.NE, 0).anyTrue())
+                return false;
+            touchesAnchor |= f.and(LongVector.fromArray(species, state, anchors + w)).compare(VectorOperators.NE, 0).anyTrue();
+        }
+        for(int w=body; w<words; w++)
+        {
+            long f = footprints[off + w];
+            if((f & state[forbidden + w]) != 0)
+                return false;
+            touchesAnchor |= (f & state[anchors + w]) != 0;
+        }
+        return touchesAnchor;
+    }
+
+    /**
+     * Adds every legal placement in a range of placement ids to a list, see MaskKernels.
+     * The first vector of the forbidden and anchor masks is loaded once, so when a mask
+     * is exactly one vector every placement costs one load and two ANDs.
+     */
+    public int legalPlacements(long[] footprints, int firstId, int endId, long[] state, int forbidden, int anchors, int words, MoveList out)
+    {
+        VectorSpecies<Long> species = species(words);
+        int lanes = species.length();
+        int added = 0;
+        if(words < lanes)
+        {
+            for(int id=firstId; id<endId; id++)
+                if(isLegal(footprints, id * words, state, forbidden, anchors, words))
+                {
+                    out.add(id);
+                    added++;
+                }
+            return added;
+        }
+
+        LongVector forbiddenCells = LongVector.fromArray(species, state, forbidden);
+        LongVector anchorCells = LongVector.fromArray(species, state, anchors);
+        for(int id=firstId; id<endId; id++)
+        {
+            int off = id * words;
+            LongVector f = LongVector.fromArray(species, footprints, off);
+            if(f.and(forbiddenCells).compare(VectorOperators.NE, 0).anyTrue())
+                continue;
+            boolean legal = f.and(anchorCells).compare(VectorOperators.NE, 0).anyTrue();
+            boolean clear = true;
+            for(int w=lanes; w<words && clear; w++)
+            {
+                long part = footprints[off + w];
+                clear = (part & state[forbidden + w]) == 0;
+                legal |= (part & state[anchors + w]) != 0;
+            }
+            if(clear && legal)
+            {
+                out.add(id);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Puts a placement down for a player, see MaskKernels
+     */
+    public void apply(long[] state, int cells, int occupied, int forbidden, int anchors, int players, int player,
+                      long[][] masks, int off, int words)
+    {
+        VectorSpecies<Long> species = species(words);
+        int body = species.loopBound(words);
+        int ownForbidden = forbidden + player * words;
+        int ownAnchors = anchors + player * words;
+        for(int w=0; w<body; w+=species.length())
+        {
+            LongVector f = LongVector.fromArray(species, masks[0], off + w);
+            LongVector notF = f.not();
+            LongVector.fromArray(species, state, cells + w).or(f).intoArray(state, cells + w);
+            LongVector.fromArray(species, state, occupied + w).or(f).intoArray(state, occupied + w);
+            for(int p=0; p<players; p++)
+            {
+                int pf = forbidden + p * words + w;
+                int pa = anchors + p * words + w;
+                LongVector.fromArray(species, state, pf).or(f).intoArray(state, pf);
+                LongVector.fromArray(species, state, pa).and(notF).intoArray(state, pa);
+            }
+            LongVector nowForbidden = LongVector.fromArray(species, state, ownForbidden + w)
+                    .or(LongVector.fromArray(species, masks[1], off + w));
+            nowForbidden.intoArray(state, ownForbidden + w);
+            LongVector.fromArray(species, state, ownAnchors + w)
+                    .or(LongVector.fromArray(species, masks[2], off + w))
+                    .and(nowForbidden.not())
+                    .intoArray(state, ownAnchors + w);
+        }
+        for(int w=body; w<words; w++)
+        {
+            long f = masks[0][off + w];
+            state[cells + w] |= f;
+            state[occupied + w] |= f;
+            for(int p=0; p<players; p++)
+            {
+                state[forbidden + p * words + w] |= f;
+                state[anchors + p * words + w] &= ~f;
+            }
+            state[ownForbidden + w] |= masks[1][off + w];
+            state[ownAnchors + w] = (state[ownAnchors + w] | masks[2][off + w]) & ~state[ownForbidden + w];
+        }
+    }
+}
@@ -0,0 +1,948 @@
+import java.util.Arrays;
+
+/**
+ * Bitboard version of the game state. Every player's pieces are stored as one
+ * mask (see BoardGeometry for the layout) so the rules can be checked with a
+ * handful of word wide AND/OR/shift operations instead of walking the grid.
+ * Pieces are placed by placement id (see PlacementTable).
+ * Players are numbered from 0 in turn order.
+ *
+ * Besides the pieces the board keeps, for every player, the cells they may not
+ * cover (forbidden) and the empty cells a new piece can grow from (anchors).
+ * Both are updated in a few mask operations when a piece is applied, so move
+ * checks and move generation never rescan the board.
+ * All masks, the used pieces, the turn, the skip flags and the position's
+ * zobrist hash live in one long array so the board can be copied with one arraycopy.
+ *
+ * doMove/undoMove keep a journal of earlier states so a search can walk the
+ * game tree on one board: undoMove restores the board exactly as it was.
+ */
+public class BitBoard
+{
+    // move code meaning the player to move skips their turn
+    public static final int PASS = -1;
+
+    // the mask kernels picked at startup
+    private static final MaskKernels kernels = MaskKernels.SELECTED;
+
+    // symmetries a position can be seen through (see symmetry)
+    public static final int IDENTITY = 0;
+    public static final int TRANSPOSE = 1;
+
+    // every placement of every piece and its masks
+    private final PlacementTable table;
+    // hash keys for positions
+    private final Zobrist zobrist;
+    // the layout of the board
+    private final BoardGeometry geo;
+    // number of longs per mask
+    private final int words;
+    // number of players
+    private final int players;
+
+    // offsets of the masks stored in the state array
+    private final int cellsAt;
+    private final int occupiedAt;
+    private final int forbiddenAt;
+    private final int anchorsAt;
+    private final int usedAt;
+    private final int turnAt;
+    private final int skippedAt;
+    private final int hashAt;
+    private final int countAt;
+    private final int mirrorAt;
+
+    // stores all the masks
+    // player p's pieces use words [cellsAt + p*words, cellsAt + (p+1)*words),
+    // the other per player masks use the same pattern.
+    // usedAt + p holds a bit per piece player p has placed, turnAt the player to move
+    // and skippedAt a bit per player that skipped their last turn, hashAt the zobrist hash,
+    // countAt + p the number of cells player p covers, mirrorAt the hash XOR the hash of the transposed position
+    private final long[] state;
+
+    // stores the states before each doMove that has not been undone
+    private long[] journal = new long[0];
+    // stores the number of states in the journal
+    private int depth = 0;
+
+    // work space for the dead cell analysis, five masks
+    private final long[] scratch;
+
+    /**
+     * Creates an empty board
+     * @param table - the placements of the pieces on the board
+     */
+    public BitBoard(PlacementTable table)
+    {
+        this.table = table;
+        this.zobrist = table.zobrist();
+        this.geo = table.geometry();
+        this.words = geo.words();
+        this.players = geo.players();
+
+        cellsAt = 0;
+        occupiedAt = cellsAt + players * words;
+        forbiddenAt = occupiedAt + words;
+        anchorsAt = forbiddenAt + players * words;
+        usedAt = anchorsAt + players * words;
+        turnAt = usedAt + players;
+        skippedAt = turnAt + 1;
+        hashAt = skippedAt + 1;
+        countAt = hashAt + 1;
+        mirrorAt = countAt + players;
+        state = new long[mirrorAt + 1];
+        scratch = new long[5 * words];
+        clear();
+    }
+
+    /**
+     * Creates a copy of the provided board
+     * @param b - board to be copied
+     */
+    public BitBoard(BitBoard b)
+    {
+        this(b.table);
+        copyFrom(b);
+    }
+
+    /**
+     * Makes this board a copy of the provided board. The journal is not copied,
+     * so the copy can not undo moves made before it was copied.
+     * @param b - board with the same placement table to copy from
+     */
+    public void copyFrom(BitBoard b)
+    {
+        System.arraycopy(b.state, 0, state, 0, state.length);
+        depth = 0;
+    }
+
+    /**
+     * Puts the board back to a state taken from state() of a board with the same
+     * placement table. The journal is emptied.
+     * @param snapshot - the state to restore
+     */
+    public void restore(long[] snapshot)
+    {
+        System.arraycopy(snapshot, 0, state, 0, state.length);
+        depth = 0;
+    }
+
+    /**
+     * Sets up a position from its parts and rebuilds every mask and the hash.
+     * The journal is emptied.
+     * @param owners - the player on each cell, row by row (rows * cols entries), -1 for empty
+     * @param used - the pieces each player has used, bit k set when piece k was used
+     * @param turn - the player to move
+     * @param skipped - bit p set when player p skipped their last turn
+     */
+    public void setPosition(int[] owners, long[] used, int turn, long skipped)
+    {
+        Bits.clear(state, 0, state.length);
+        depth = 0;
+        for(int r=0; r<geo.rows(); r++)
+            for(int c=0; c<geo.cols(); c++)
+            {
+                int owner = owners[r * geo.cols() + c];
+                if(owner >= 0)
+                    Bits.set(state, cellsAt(owner), geo.index(c, r));
+            }
+        for(int p=0; p<players; p++)
+            state[usedAt + p] = used[p];
+        state[turnAt] = turn;
+        state[skippedAt] = skipped;
+        refresh();
+    }
+
+    /**
+     * Returns the layout of the board
+     * @return - the board geometry
+     */
+    public BoardGeometry geometry()
+    {
+        return geo;
+    }
+
+    /**
+     * Returns the placements used by the board
+     * @return - the placement table
+     */
+    public PlacementTable placements()
+    {
+        return table;
+    }
+
+    /**
+     * Removes every piece from the board, gives every player all their pieces back,
+     * clears the skip flags, makes it player 0's turn and empties the journal
+     */
+    public void clear()
+    {
+        Bits.clear(state, 0, state.length);
+        depth = 0;
+        refresh();
+    }
+
+    /**
+     * Returns the array holding every mask of the board. The array must not be modified.
+     * @return - the state array
+     */
+    public long[] state()
+    {
+        return state;
+    }
+
+    /**
+     * Returns where a player's pieces start in the state array
+     * @param player - the player
+     * @return - offset of the player's cell mask
+     */
+    public int cellsAt(int player)
+    {
+        return cellsAt + player * words;
+    }
+
+    /**
+     * Returns where a player's forbidden cells start in the state array
+     * @param player - the player
+     * @return - offset of the player's forbidden mask
+     */
+    public int forbiddenAt(int player)
+    {
+        return forbiddenAt + player * words;
+    }
+
+    /**
+     * Returns where a player's anchors start in the state array
+     * @param player - the player
+     * @return - offset of the player's anchor mask
+     */
+    public int anchorsAt(int player)
+    {
+        return anchorsAt + player * words;
+    }
+
+    /**
+     * Returns where the mask of all occupied cells starts in the state array
+     * @return - offset of the occupied mask
+     */
+    public int occupiedAt()
+    {
+        return occupiedAt;
+    }
+
+    /**
+     * Returns whose turn it is
+     * @return - the player to move
+     */
+    public int turn()
+    {
+        return (int)state[turnAt];
+    }
+
+    /**
+     * Passes the turn to the next player
+     */
+    public void nextTurn()
+    {
+        int turn = turn();
+        int next = (turn + 1) % players;
+        state[turnAt] = next;
+        state[hashAt] ^= zobrist.turnKey(turn) ^ zobrist.turnKey(next);
+    }
+
+    /**
+     * Returns the zobrist hash of the position: the pieces on the board, the pieces
+     * each player has used, the player to move and the skip flags
+     * @return - 64 bit hash of the position
+     */
+    public long hash()
+    {
+        return state[hashAt];
+    }
+
+    /**
+     * Returns the zobrist hash the position would have with its rows and columns swapped.
+     * Equal to hash() when the board is not transpose symmetric.
+     * @return - 64 bit hash of the transposed position
+     */
+    public long mirrorHash()
+    {
+        return state[hashAt] ^ state[mirrorAt];
+    }
+
+    /**
+     * Returns the symmetry that takes this position to its canonical form: the one
+     * of the position and its transpose with the smaller hash. A position and its
+     * transpose share the same canonical form, so caches keyed on canonicalHash
+     * find both.
+     * @return - IDENTITY or TRANSPOSE
+     */
+    public int symmetry()
+    {
+        return (state[hashAt] <= mirrorHash()) ? IDENTITY : TRANSPOSE;
+    }
+
+    /**
+     * Returns the hash of the canonical form of the position (see symmetry)
+     * @return - the smaller of hash() and mirrorHash()
+     */
+    public long canonicalHash()
+    {
+        return Math.min(state[hashAt], mirrorHash());
+    }
+
+    /**
+     * Moves a placement through a symmetry. Every symmetry is its own inverse, so the
+     * same call maps a move into the canonical form and back out of it.
+     * @param move - placement id or PASS
+     * @param symmetry - IDENTITY or TRANSPOSE
+     * @return - the placement id seen through the symmetry
+     */
+    public int transform(int move, int symmetry)
+    {
+        if(move == PASS || symmetry == IDENTITY)
+            return move;
+        return table.transposed(move);
+    }
+
+    /**
+     * Computes the zobrist hash of the position from scratch
+     * @return - 64 bit hash of the position, equal to hash()
+     */
+    public long computeHash()
+    {
+        long h = zobrist.turnKey(turn());
+        for(int p=0; p<players; p++)
+        {
+            for(int i = Bits.nextSetBit(state, cellsAt(p), words, 0); i >= 0; i = Bits.nextSetBit(state, cellsAt(p), words, i + 1))
+                h ^= zobrist.cellKey(p, i);
+            for(int k=0; k<table.pieces(); k++)
+                if((used(p) & (1L << k)) != 0)
+                    h ^= zobrist.pieceKey(p, k);
+            if(skipped(p))
+                h ^= zobrist.skipKey(p);
+        }
+        return h;
+    }
+
+    /**
+     * Returns if two boards hold the same position (pieces, used pieces, turn and skip flags)
+     * @param b - board with the same placement table
+     * @return - true when the positions are the same
+     */
+    public boolean samePosition(BitBoard b)
+    {
+        if(state[hashAt] != b.state[hashAt] || state[turnAt] != b.state[turnAt] || state[skippedAt] != b.state[skippedAt])
+            return false;
+        for(int i=0; i<occupiedAt; i++)
+            if(state[i] != b.state[i])
+                return false;
+        for(int p=0; p<players; p++)
+            if(state[usedAt + p] != b.state[usedAt + p])
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns if a player skipped their last turn
+     * @param player - the player
+     * @return - true when the player's last turn was a skip
+     */
+    public boolean skipped(int player)
+    {
+        return (state[skippedAt] & (1L << player)) != 0;
+    }
+
+    /**
+     * Returns if the game is over: every player skipped their last turn, so none of them can move
+     * @return - true when the game is over
+     */
+    public boolean isGameOver()
+    {
+        return state[skippedAt] == (1L << players) - 1;
+    }
+
+    /**
+     * Returns the players that have placed the most squares, who win when the game is over
+     * @return - mask with bit p set for each leading player, more than one bit on a tie
+     */
+    public long leaders()
+    {
+        int best = -1;
+        long leaders = 0;
+        for(int p=0; p<players; p++)
+        {
+            int count = count(p);
+            if(count > best)
+            {
+                best = count;
+                leaders = 1L << p;
+            }
+            else if(count == best)
+                leaders |= 1L << p;
+        }
+        return leaders;
+    }
+
+    /**
+     * Returns the pieces a player has placed
+     * @param player - the player
+     * @return - mask with bit k set when piece k has been used
+     */
+    public long used(int player)
+    {
+        return state[usedAt + player];
+    }
+
+    /**
+     * Returns the pieces a player can still place
+     * @param player - the player
+     * @return - mask with bit k set when piece k has not been used
+     */
+    public long available(int player)
+    {
+        return ~state[usedAt + player] & ((1L << table.pieces()) - 1);
+    }
+
+    /**
+     * Marks a piece as used or unused without placing it
+     * @param player - the player
+     * @param piece - index of the piece
+     * @param used - true to mark the piece used
+     */
+    public void setUsed(int player, int piece, boolean used)
+    {
+        if(used != ((state[usedAt + player] & (1L << piece)) != 0))
+        {
+            state[usedAt + player] ^= 1L << piece;
+            state[hashAt] ^= zobrist.pieceKey(player, piece);
+        }
+    }
+
+    /**
+     * Places a legal placement for the player to move, marks the piece as used,
+     * clears their skip flag and passes the turn
+     * @param id - placement id of a legal placement
+     */
+    public void play(int id)
+    {
+        int player = turn();
+        apply(player, id);
+        state[usedAt + player] |= 1L << table.piece(id);
+        state[hashAt] ^= zobrist.placementKey(id, player);
+        state[mirrorAt] ^= zobrist.mirrorKey(id, player);
+        if(skipped(player))
+        {
+            state[skippedAt] &= ~(1L << player);
+            state[hashAt] ^= zobrist.skipKey(player);
+        }
+        nextTurn();
+    }
+
+    /**
+     * Marks a player as having skipped and passes the turn
+     * @param player - the player skipping
+     */
+    public void skip(int player)
+    {
+        if(!skipped(player))
+        {
+            state[skippedAt] |= 1L << player;
+            state[hashAt] ^= zobrist.skipKey(player);
+        }
+        nextTurn();
+    }
+
+    /**
+     * Makes a move for the player to move, remembering the current state so
+     * undoMove can restore it
+     * @param move - placement id of a legal placement, or PASS to skip
+     */
+    public void doMove(int move)
+    {
+        if((depth + 1) * state.length > journal.length)
+            journal = Arrays.copyOf(journal, Math.max(64, depth + 1) * 2 * state.length);
+        System.arraycopy(state, 0, journal, depth * state.length, state.length);
+        depth++;
+        if(move == PASS)
+            skip(turn());
+        else
+            play(move);
+    }
+
+    /**
+     * Restores the board to how it was before the last doMove that has not been undone
+     */
+    public void undoMove()
+    {
+        if(depth == 0)
+            throw new IllegalStateException("no move to undo");
+        depth--;
+        System.arraycopy(journal, depth * state.length, state, 0, state.length);
+    }
+
+    /**
+     * Returns the number of moves that can be undone
+     * @return - number of states in the journal
+     */
+    public int depth()
+    {
+        return depth;
+    }
+
+    /**
+     * Returns which player has a piece on a cell
+     * @param c - column
+     * @param r - row
+     * @return - the player owning the cell, -1 when it is empty or off the board
+     */
+    public int owner(int c, int r)
+    {
+        if(!geo.isInGrid(c, r))
+            return -1;
+        int bit = geo.index(c, r);
+        for(int p=0; p<players; p++)
+            if(Bits.get(state, cellsAt(p), bit))
+                return p;
+        return -1;
+    }
+
+    /**
+     * Returns if a player's starting cell is still empty
+     * @param player - the player
+     * @return - true when no piece covers the starting cell
+     */
+    public boolean startIsEmpty(int player)
+    {
+        return !Bits.get(state, occupiedAt, geo.startCell(player));
+    }
+
+    /**
+     * Puts a legal placement down for a player and updates every player's
+     * forbidden cells and anchors. The work done depends only on the number
+     * of words in a mask, not on the pieces already on the board.
+     * @param player - the player placing the piece
+     * @param id - placement id of a legal placement (see isLegal)
+     */
+    private void apply(int player, int id)
+    {
+        state[countAt + player] += table.cellCount(id);
+        kernels.apply(state, cellsAt(player), occupiedAt, forbiddenAt, anchorsAt, players, player, table.masks(), id * words, words);
+    }
+
+    /**
+     * Puts a placement's cells down for a player without checking the rules.
+     * Any other player on those cells loses them.
+     * @param player - the player receiving the cells
+     * @param id - placement id
+     */
+    public void place(int player, int id)
+    {
+        long[] footprints = table.footprints();
+        int off = id * words;
+        for(int p=0; p<players; p++)
+            for(int w=0; w<words; w++)
+            {
+                if(p == player)
+                    state[cellsAt(p) + w] |= footprints[off + w];
+                else
+                    state[cellsAt(p) + w] &= ~footprints[off + w];
+            }
+        refresh();
+    }
+
+    /**
+     * Empties a placement's cells, whoever owns them
+     * @param id - placement id
+     */
+    public void remove(int id)
+    {
+        long[] footprints = table.footprints();
+        int off = id * words;
+        for(int p=0; p<players; p++)
+            for(int w=0; w<words; w++)
+                state[cellsAt(p) + w] &= ~footprints[off + w];
+        refresh();
+    }
+
+    /**
+     * Rebuilds the occupied, forbidden and anchor masks, the cell counts and the hash from the players' pieces.
+     * Used after changes that apply can not follow incrementally.
+     */
+    private void refresh()
+    {
+        state[hashAt] = computeHash();
+        state[mirrorAt] = 0;
+        if(geo.isTransposeSymmetric())
+            for(int p=0; p<players; p++)
+                for(int i = Bits.nextSetBit(state, cellsAt(p), words, 0); i >= 0; i = Bits.nextSetBit(state, cellsAt(p), words, i + 1))
+                    state[mirrorAt] ^= zobrist.mirrorCellKey(geo, p, i);
+        for(int p=0; p<players; p++)
+            state[countAt + p] = Bits.popCount(state, cellsAt(p), words);
+        Bits.clear(state, occupiedAt, words);
+        for(int p=0; p<players; p++)
+            for(int w=0; w<words; w++)
+                state[occupiedAt + w] |= state[cellsAt(p) + w];
+
+        for(int p=0; p<players; p++)
+        {
+            geo.orthogonal(state, cellsAt(p), state, forbiddenAt(p));
+            for(int w=0; w<words; w++)
+                state[forbiddenAt(p) + w] |= state[occupiedAt + w];
+
+            if(startIsEmpty(p))
+            {
+                Bits.clear(state, anchorsAt(p), words);
+                Bits.set(state, anchorsAt(p), geo.startCell(p));
+            }
+            else
+            {
+                geo.diagonal(state, cellsAt(p), state, anchorsAt(p));
+                for(int w=0; w<words; w++)
+                    state[anchorsAt(p) + w] &= ~state[forbiddenAt(p) + w];
+            }
+        }
+    }
+
+    /**
+     * Returns if a placement follows the placement rules for a player:
+     * none of its cells are forbidden (occupied or touching an edge of the
+     * player's pieces) and at least one of them is an anchor. Before the
+     * player's starting cell is covered the only anchor is the starting cell.
+     * @param player - the player placing the piece
+     * @param id - placement id
+     * @return - true when the placement is legal
+     */
+    public boolean isLegal(int player, int id)
+    {
+        return kernels.isLegal(table.footprints(), id * words, state, forbiddenAt(player), anchorsAt(player), words);
+    }
+
+    /**
+     * Adds every legal placement of one piece to the provided list by testing each of the
+     * piece's placements against the player's forbidden and anchor masks
+     * (see MaskKernels.legalPlacements). Gives the same placements as the other legalMoves
+     * methods; it is the data parallel form used by the vector kernels.
+     * @param player - the player
+     * @param piece - the index of the piece
+     * @param out - list the placement ids are added to (it is not cleared first)
+     * @return - the number of placements added
+     */
+    public int legalPlacements(int player, int piece, MoveList out)
+    {
+        return kernels.legalPlacements(table.footprints(), table.firstId(piece), table.endId(piece), state,
+                forbiddenAt(player), anchorsAt(player), words, out);
+    }
+
+    /**
+     * Returns the next anchor of a player, in row order
+     * @param player - the player
+     * @param from - first bit index to look at
+     * @return - bit index of the anchor, -1 when there are no more
+     */
+    public int nextAnchor(int player, int from)
+    {
+        return Bits.nextSetBit(state, anchorsAt(player), words, from);
+    }
+
+    /**
+     * Adds every legal placement of a player's available pieces to the provided list.
+     * Each form of each piece is tested at every top left cell at once: a top left
+     * cell is legal when none of the form's cells, shifted there, land on a
+     * forbidden cell and at least one lands on an anchor.
+     * @param player - the player
+     * @param available - bit k is set when piece k may still be placed
+     * @param out - list the placement ids are added to (it is not cleared first)
+     */
+    public void legalMoves(int player, long available, MoveList out)
+    {
+        int forbidden = forbiddenAt(player);
+        int anchors = anchorsAt(player);
+        if(Bits.isEmpty(state, anchors, words))
+            return;
+        long[] origins = table.formOrigins();
+        for(int k=0; k<table.pieces(); k++)
+        {
+            if((available & (1L << k)) == 0)
+                continue;
+            for(int f: table.forms(k))
+            {
+                int[] offsets = table.formCells(k, f);
+                int pf = (k * Shape.FORMS + f) * words;
+                for(int w=0; w<words; w++)
+                {
+                    long legal = legalOrigins(forbidden, anchors, offsets, origins[pf + w], w);
+                    while(legal != 0)
+                    {
+                        int origin = (w << 6) + Long.numberOfTrailingZeros(legal);
+                        out.add(table.id(k, f, origin));
+                        legal &= legal - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns one word of the mask of top left cells a form can legally be placed at
+     * @param forbidden - offset of the player's forbidden mask
+     * @param anchors - offset of the player's anchor mask
+     * @param offsets - bit offsets of the form's cells from its top left corner
+     * @param origins - word w of the mask of top left cells the form fits at
+     * @param w - the word to compute
+     * @return - word w of the legal top left cells
+     */
+    private long legalOrigins(int forbidden, int anchors, int[] offsets, long origins, int w)
+    {
+        long legal = origins;
+        long touch = 0;
+        for(int i=0; i<offsets.length && legal != 0; i++)
+        {
+            legal &= ~Bits.wordShiftedRight(state, forbidden, words, w, offsets[i]);
+            touch |= Bits.wordShiftedRight(state, anchors, words, w, offsets[i]);
+        }
+        return legal & touch;
+    }
+
+    /**
+     * Adds the legal placements of one piece to two lists: placements covering a cell of
+     * the priority mask go to the first list, the others to the second.
+     * @param player - the player
+     * @param piece - the index of the piece
+     * @param priority - mask array holding the priority cells
+     * @param po - offset of the priority mask
+     * @param first - list the placement ids covering a priority cell are added to
+     * @param rest - list the other placement ids are added to
+     */
+    public void legalMoves(int player, int piece, long[] priority, int po, MoveList first, MoveList rest)
+    {
+        int forbidden = forbiddenAt(player);
+        int anchors = anchorsAt(player);
+        long[] origins = table.formOrigins();
+        for(int f: table.forms(piece))
+        {
+            int[] offsets = table.formCells(piece, f);
+            int pf = (piece * Shape.FORMS + f) * words;
+            for(int w=0; w<words; w++)
+            {
+                long legal = legalOrigins(forbidden, anchors, offsets, origins[pf + w], w);
+                if(legal == 0)
+                    continue;
+                long covers = 0;
+                for(int i=0; i<offsets.length; i++)
+                    covers |= Bits.wordShiftedRight(priority, po, words, w, offsets[i]);
+                for(long bits = legal & covers; bits != 0; bits &= bits - 1)
+                    first.add(table.id(piece, f, (w << 6) + Long.numberOfTrailingZeros(bits)));
+                for(long bits = legal & ~covers; bits != 0; bits &= bits - 1)
+                    rest.add(table.id(piece, f, (w << 6) + Long.numberOfTrailingZeros(bits)));
+            }
+        }
+    }
+
+    /**
+     * Returns if a player can place any of their available pieces.
+     * Stops at the first legal placement, so it is much cheaper than generating every move.
+     * Pieces are tried in piece order, which in the standard set puts the small pieces
+     * that fit in the most places first.
+     * @param player - the player
+     * @param available - bit k is set when piece k may still be placed
+     * @return - true when the player has at least one legal placement
+     */
+    public boolean hasLegalMove(int player, long available)
+    {
+        int forbidden = forbiddenAt(player);
+        int anchors = anchorsAt(player);
+        if(Bits.isEmpty(state, anchors, words))
+            return false;
+        long[] origins = table.formOrigins();
+        for(int k=0; k<table.pieces(); k++)
+        {
+            if((available & (1L << k)) == 0)
+                continue;
+            for(int f: table.forms(k))
+            {
+                int[] offsets = table.formCells(k, f);
+                int pf = (k * Shape.FORMS + f) * words;
+                for(int w=0; w<words; w++)
+                    if(legalOrigins(forbidden, anchors, offsets, origins[pf + w], w) != 0)
+                        return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds every legal placement for the player to move to the provided list
+     * @param out - list the placement ids are added to (it is not cleared first)
+     */
+    public void legalMoves(MoveList out)
+    {
+        legalMoves(turn(), available(turn()), out);
+    }
+
+    /**
+     * Counts a player's legal placements without listing them, using a popcount of
+     * each form's legal top left cells.
+     * @param player - the player
+     * @param available - bit k is set when piece k may still be placed
+     * @param perPiece - when not null, entry k is set to the number of legal placements of piece k
+     * @return - the number of legal placements
+     */
+    public int countLegalMoves(int player, long available, int[] perPiece)
+    {
+        int forbidden = forbiddenAt(player);
+        int anchors = anchorsAt(player);
+        if(perPiece != null)
+            Arrays.fill(perPiece, 0, table.pieces(), 0);
+        if(Bits.isEmpty(state, anchors, words))
+            return 0;
+        long[] origins = table.formOrigins();
+        int total = 0;
+        for(int k=0; k<table.pieces(); k++)
+        {
+            if((available & (1L << k)) == 0)
+                continue;
+            int count = 0;
+            for(int f: table.forms(k))
+            {
+                int[] offsets = table.formCells(k, f);
+                int pf = (k * Shape.FORMS + f) * words;
+                for(int w=0; w<words; w++)
+                    count += Long.bitCount(legalOrigins(forbidden, anchors, offsets, origins[pf + w], w));
+            }
+            if(perPiece != null)
+                perPiece[k] = count;
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Writes the cells a player can never cover again into the destination mask.
+     * A cell is dead when it is forbidden (occupied or touching an edge of the player's
+     * pieces) or when it can not be reached from any of the player's anchors.
+     * Pieces are joined edge to edge inside a piece and corner to corner between pieces,
+     * so every cell the player covers later is joined to an anchor by a path of free cells
+     * where each step goes to one of the eight neighbors, and the player needs at least
+     * one square per cell of the path. Cells further from every anchor than the player's
+     * remaining squares allow are dead too.
+     * @param player - the player
+     * @param dst - destination mask array
+     * @param dOff - offset of the destination mask
+     */
+    public void deadCells(int player, long[] dst, int dOff)
+    {
+        int reach = 0;
+        int frontier = words;
+        int orth = 2 * words;
+        int diag = 3 * words;
+        int forbidden = forbiddenAt(player);
+        System.arraycopy(state, anchorsAt(player), scratch, reach, words);
+        System.arraycopy(state, anchorsAt(player), scratch, frontier, words);
+
+        int steps = remainingCells(player) - 1;
+        for(int step=0; step<steps && !Bits.isEmpty(scratch, frontier, words); step++)
+        {
+            geo.orthogonal(scratch, frontier, scratch, orth);
+            geo.diagonal(scratch, frontier, scratch, diag);
+            for(int w=0; w<words; w++)
+            {
+                long next = (scratch[orth + w] | scratch[diag + w]) & ~state[forbidden + w] & ~scratch[reach + w];
+                scratch[frontier + w] = next;
+                scratch[reach + w] |= next;
+            }
+        }
+        if(steps < 0)
+            Bits.clear(scratch, reach, words);
+
+        long[] valid = geo.valid();
+        for(int w=0; w<words; w++)
+            dst[dOff + w] = valid[w] & ~scratch[reach + w];
+    }
+
+    /**
+     * Returns the number of squares in the pieces a player has not placed
+     * @param player - the player
+     * @return - number of squares left
+     */
+    public int remainingCells(int player)
+    {
+        int cells = 0;
+        for(long left = available(player); left != 0; left &= left - 1)
+            cells += table.pieceSize(Long.numberOfTrailingZeros(left));
+        return cells;
+    }
+
+    /**
+     * Drops dead cells from a player's masks: every dead cell (see deadCells) becomes forbidden
+     * and anchors that no legal placement of a remaining piece covers are removed.
+     * Neither can be used by the player again, so the legal moves stay the same, but
+     * move generation and moveLocations no longer look at them.
+     * Rebuilding the masks (place, remove) brings them back, which is harmless.
+     * @param player - the player
+     */
+    public void pruneDeadCells(int player)
+    {
+        int dead = 4 * words;
+        int forbidden = forbiddenAt(player);
+        int anchors = anchorsAt(player);
+        deadCells(player, scratch, dead);
+        for(int w=0; w<words; w++)
+            state[forbidden + w] |= scratch[dead + w];
+
+        // covered collects every cell a legal placement covers, legal the legal top left cells of one form
+        int covered = 0;
+        int legal = words;
+        Bits.clear(scratch, covered, words);
+        long[] origins = table.formOrigins();
+        long available = available(player);
+        for(int k=0; k<table.pieces(); k++)
+        {
+            if((available & (1L << k)) == 0)
+                continue;
+            for(int f: table.forms(k))
+            {
+                int[] offsets = table.formCells(k, f);
+                int pf = (k * Shape.FORMS + f) * words;
+                boolean any = false;
+                for(int w=0; w<words; w++)
+                {
+                    scratch[legal + w] = legalOrigins(forbidden, anchors, offsets, origins[pf + w], w);
+                    any |= scratch[legal + w] != 0;
+                }
+                if(!any)
+                    continue;
+                for(int i=0; i<offsets.length; i++)
+                    for(int w=0; w<words; w++)
+                        scratch[covered + w] |= Bits.wordShiftedLeft(scratch, legal, w, offsets[i]);
+            }
+        }
+        for(int w=0; w<words; w++)
+            state[anchors + w] &= scratch[covered + w];
+    }
+
+    /**
+     * Returns if a player has a piece orthogonal to the provided location
+     * @param player - the player
+     * @param c - column
+     * @param r - row
+     * @return true when one of the four orthogonal neighbors belongs to the player
+     */
+    public boolean touchesEdge(int player, int c, int r)
+    {
+        int own = cellsAt(player);
+        return geo.test(state, own, c - 1, r) || geo.test(state, own, c + 1, r) ||
+                geo.test(state, own, c, r - 1) || geo.test(state, own, c, r + 1);
+    }
+
+    /**
+     * Returns the number of cells a player covers. The count is kept as pieces are placed,
+     * so this is a single read.
+     * @param player - the player
+     * @return - number of squares the player has placed
+     */
+    public int count(int player)
+    {
+        return (int)state[countAt + player];
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Helper methods for masks that are stored as several longs in a row.
+ * Bit i of a mask is bit (i % 64) of the long at (offset + i / 64).
+ */
+public class Bits
+{
+    /**
+     * Returns if a bit is set
+     * @param mask - mask array
+     * @param off - offset of the mask in the array
+     * @param bit - bit index
+     * @return - true if the bit is set
+     */
+    public static boolean get(long[] mask, int off, int bit)
+    {
+        return (mask[off + (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Sets a bit
+     * @param mask - mask array
+     * @param off - offset of the mask in the array
+     * @param bit - bit index
+     */
+    public static void set(long[] mask, int off, int bit)
+    {
+        mask[off + (bit >>> 6)] |= 1L << bit;
+    }
+
+    /**
+     * Clears every word of a mask
+     * @param mask - mask array
+     * @param off - offset of the mask in the array
+     * @param words - number of words in the mask
+     */
+    public static void clear(long[] mask, int off, int words)
+    {
+        for(int w=0; w<words; w++)
+            mask[off + w] = 0;
+    }
+
+    /**
+     * Returns if a mask has no bits set
+     * @param mask - mask array
+     * @param off - offset of the mask in the array
+     * @param words - number of words in the mask
+     * @return - true when every bit is clear
+     */
+    public static boolean isEmpty(long[] mask, int off, int words)
+    {
+        for(int w=0; w<words; w++)
+            if(mask[off + w] != 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns if two masks share a set bit
+     * @param a - first mask array
+     * @param ao - offset of the first mask
+     * @param b - second mask array
+     * @param bo - offset of the second mask
+     * @param words - number of words in the masks
+     * @return - true when both masks have a common bit set
+     */
+    public static boolean intersects(long[] a, int ao, long[] b, int bo, int words)
+    {
+        for(int w=0; w<words; w++)
+            if((a[ao + w] & b[bo + w]) != 0)
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the number of set bits in a mask
+     * @param mask - mask array
+     * @param off - offset of the mask in the array
+     * @param words - number of words in the mask
+     * @return - number of bits set
+     */
+    public static int popCount(long[] mask, int off, int words)
+    {
+        int count = 0;
+        for(int w=0; w<words; w++)
+            count += Long.bitCount(mask[off + w]);
+        return count;
+    }
+
+    /**
+     * Returns the index of the first set bit at or after the provided index
+     * @param mask - mask array
+     * @param off - offset of the mask in the array
+     * @param words - number of words in the mask
+     * @param from - first bit index to look at
+     * @return - the index of the next set bit, -1 when there is none
+     */
+    public static int nextSetBit(long[] mask, int off, int words, int from)
+    {
+        int w = from >>> 6;
+        if(w >= words)
+            return -1;
+        long word = mask[off + w] & (-1L << from);
+        while(true)
+        {
+            if(word != 0)
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            if(++w == words)
+                return -1;
+            word = mask[off + w];
+        }
+    }
+
+    /**
+     * Returns one word of a mask after the whole mask is shifted towards higher bit indices
+     * @param mask - mask array
+     * @param off - offset of the mask in the array
+     * @param w - the word to compute
+     * @param n - shift distance, 0 or more
+     * @return - word w of (mask shifted left by n)
+     */
+    public static long wordShiftedLeft(long[] mask, int off, int w, int n)
+    {
+        int src = w - (n >>> 6);
+        int b = n & 63;
+        if(src < 0)
+            return 0;
+        long v = mask[off + src] << b;
+        if(b != 0 && src > 0)
+            v |= mask[off + src - 1] >>> (64 - b);
+        return v;
+    }
+
+    /**
+     * Returns one word of a mask after the whole mask is shifted towards lower bit indices
+     * @param mask - mask array
+     * @param off - offset of the mask in the array
+     * @param words - number of words in the mask
+     * @param w - the word to compute
+     * @param n - shift distance, 0 or more
+     * @return - word w of (mask shifted right by n)
+     */
+    public static long wordShiftedRight(long[] mask, int off, int words, int w, int n)
+    {
+        int src = w + (n >>> 6);
+        int b = n & 63;
+        if(src >= words)
+            return 0;
+        long v = mask[off + src] >>> b;
+        if(b != 0 && src + 1 < words)
+            v |= mask[off + src + 1] << (64 - b);
+        return v;
+    }
+}
@@ -1,7 +1,6 @@
 import java.awt.*;
-import java.io.File;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Stores all the game data for a blockus game
@@ -23,42 +22,57 @@ public class BlokusBoard
     public static final int EMPTY       = 6;
 
     // Stores the pieces that are on the board
-    private int[][] board = new int[14][14];
+    private int[][] board;
+
+    // Stores the pieces that are on the board as bit masks, used for checking the rules
+    private BitBoard bits;
 
     // Stores all the shapes
-    private static ArrayList<Shape> shapes = null;
+    private static final ArrayList<Shape> shapes = new ArrayList<>(PieceCatalog.standard().shapes());
+
+    // Stores every placement of every shape on the board
+    private static final PlacementTable placements = PlacementTable.standard(BoardGeometry.DUO);
+
+    // list reused by legalMoves, created the first time it is needed
+    private MoveList legalMoves;
+
+    // stores the placement ids of the moves made with doMove that have not been undone,
+    // null while the board shares another board's state
+    private MoveList history;
+
+    // stores the last snapshot taken and copies of the grid and used shapes at that time
+    private long[] lastSnapshot;
+    private int[][] snapshotGrid;
+    private boolean[] snapshotOrange;
+    private boolean[] snapshotPurple;
 
-    // stores which shapes ornage has already used
+    // stores which shapes ornage has already used (kept in step with the bitboard)
     private boolean[] orangeUsedShapes;
     // stores which shapes purple has already used
     private boolean[] purpleUsedShapes;
 
     // Stores the font used for drawing text to the screen
-    private Font font = new Font("Times New Roman",Font.BOLD,50);
+    private static final Font font = new Font("Times New Roman",Font.BOLD,50);
 
-    // Stores the current turn
-    private int turn = ORANGE;
-
-    // Stores the status of the game
+    // Stores the status of the game, updated whenever the pieces or skips change
     private int status= PLAYING;
 
-    // stores if oranged skipped their last turn
-    private boolean orangeSkipped = false;
-    // stores if purple skipped their last turn
-    private boolean purpleSkipped = false;
-
     // stores the custom color of purple
-    private Color purple = new Color(163,73,163);
+    private static final Color purple = new Color(163,73,163);
+
+    // stores how many boards share this board's state (copy on write), null when it is not shared
+    private AtomicInteger sharers = null;
+    // stores if this board was a shared copy that has been released
+    private boolean released = false;
 
     /**
      * Creates the initial game board
      */
     public BlokusBoard()
     {
-
-        if(shapes==null)
-            loadShapes();
-
+        board = new int[BoardGeometry.DUO.rows()][BoardGeometry.DUO.cols()];
+        history = new MoveList();
+        bits = new BitBoard(placements);
         orangeUsedShapes = new boolean[shapes.size()];
         purpleUsedShapes = new boolean[shapes.size()];
 
@@ -73,26 +87,224 @@ public class BlokusBoard
      */
     public BlokusBoard(BlokusBoard b)
     {
-        if(shapes==null)
-            loadShapes();
-
+        board = new int[b.numRows()][b.numCols()];
+        history = new MoveList();
         for(int row=0; row < numRows(); row++)
-            for(int col=0; col < numCols(); col++)
+            System.arraycopy(b.board[row], 0, board[row], 0, numCols());
+        bits = new BitBoard(b.bits);
+
+        orangeUsedShapes = b.orangeUsedShapes.clone();
+        purpleUsedShapes = b.purpleUsedShapes.clone();
+        status = b.status;
+    }
+
+    /**
+     * Returns a copy of the board that shares this board's state until either board changes
+     * (copy on write). Handing a shared copy to a player that only reads it costs no copying.
+     * Either board gets its own copy of the state before it changes or hands out an array
+     * (getBoard and the used shape getters), so writing to a shared copy or to what it
+     * returns never reaches this board. Call release on the copy once it is no longer
+     * needed so this board can change without copying its state.
+     * @return - a board holding the same game as this one
+     */
+    public BlokusBoard shareCopy()
+    {
+        if(released)
+            throw new IllegalStateException("board was released");
+        if(sharers==null)
+            sharers = new AtomicInteger(1);
+        sharers.incrementAndGet();
+
+        BlokusBoard copy = new BlokusBoard(this, sharers);
+        return copy;
+    }
+
+    /**
+     * Creates a board sharing the provided board's state. Nothing else is allocated until
+     * the board is changed (see ensureOwned).
+     * @param b - the board to share with
+     * @param sharers - the count of boards sharing the state
+     */
+    private BlokusBoard(BlokusBoard b, AtomicInteger sharers)
+    {
+        this.sharers = sharers;
+        this.board = b.board;
+        this.bits = b.bits;
+        this.orangeUsedShapes = b.orangeUsedShapes;
+        this.purpleUsedShapes = b.purpleUsedShapes;
+        this.status = b.status;
+    }
+
+    /**
+     * Stops a copy from shareCopy sharing state. The board must not be used afterwards,
+     * so it lets go of the state and any later use fails instead of reading the game it shared.
+     */
+    public void release()
+    {
+        if(sharers!=null)
+        {
+            sharers.decrementAndGet();
+            sharers = null;
+            released = true;
+            board = null;
+            bits = null;
+            orangeUsedShapes = null;
+            purpleUsedShapes = null;
+        }
+    }
+
+    /**
+     * Gives this board its own copy of the state if the state is shared.
+     * Called before every change to the board and before handing out one of its arrays. The count of sharers is kept by the last
+     * board holding it, so sharing the same board again every turn does not create a new one.
+     */
+    private void ensureOwned()
+    {
+        if(released)
+            throw new IllegalStateException("board was released");
+        if(sharers!=null && sharers.get() > 1)
+        {
+            if(sharers.decrementAndGet() > 0)
             {
-                board[row][col] = b.getBoard()[row][col];
+                int[][] grid = new int[numRows()][];
+                for(int row=0; row < numRows(); row++)
+                    grid[row] = board[row].clone();
+                board = grid;
+                bits = new BitBoard(bits);
+                orangeUsedShapes = orangeUsedShapes.clone();
+                purpleUsedShapes = purpleUsedShapes.clone();
+                sharers = null;
             }
-        this.turn = b.getTurn();
-        this.orangeSkipped=b.getOrangeSkipped();
-        this.purpleSkipped=b.getPurpleSkipped();
+            else
+                sharers.set(1);
+        }
+        if(history==null)
+            history = new MoveList();
+    }
 
-        orangeUsedShapes = new boolean[shapes.size()];
-        purpleUsedShapes = new boolean[shapes.size()];
+    /**
+     * Returns a snapshot of the game state (pieces, used pieces, turn and skip flags)
+     * as a small flat array. The board also keeps a copy of its grid from the last
+     * snapshot, so restoring that snapshot is a few array copies.
+     * @return - the snapshot, for use with restore
+     */
+    public long[] snapshot()
+    {
+        if(snapshotGrid==null)
+        {
+            snapshotGrid = new int[numRows()][numCols()];
+            snapshotOrange = new boolean[orangeUsedShapes.length];
+            snapshotPurple = new boolean[purpleUsedShapes.length];
+        }
+        for(int row=0; row < numRows(); row++)
+            System.arraycopy(board[row], 0, snapshotGrid[row], 0, numCols());
+        System.arraycopy(orangeUsedShapes, 0, snapshotOrange, 0, snapshotOrange.length);
+        System.arraycopy(purpleUsedShapes, 0, snapshotPurple, 0, snapshotPurple.length);
+        lastSnapshot = bits.state().clone();
+        return lastSnapshot;
+    }
 
+    /**
+     * Puts the board back to the state held in a snapshot. Restoring the last snapshot
+     * taken from this board copies the saved grid back row by row; any other snapshot
+     * rebuilds the grid from the pieces. Moves made with doMove before the restore can
+     * no longer be undone.
+     * @param snapshot - a snapshot from a board of the same size, which must not have been changed
+     */
+    public void restore(long[] snapshot)
+    {
+        ensureOwned();
+        bits.restore(snapshot);
+        if(snapshot != lastSnapshot)
+        {
+            syncFromBits();
+            return;
+        }
+        history.clear();
+        for(int row=0; row < numRows(); row++)
+            System.arraycopy(snapshotGrid[row], 0, board[row], 0, numCols());
+        System.arraycopy(snapshotOrange, 0, orangeUsedShapes, 0, snapshotOrange.length);
+        System.arraycopy(snapshotPurple, 0, purpleUsedShapes, 0, snapshotPurple.length);
+        updateStatus();
+    }
+
+    /**
+     * Copies the game state into a bitboard without changing this board or allocating,
+     * for example to play the game on from this position (see RandomPlayout)
+     * @param target - a bitboard using PlacementTable.standard(BoardGeometry.DUO)
+     */
+    public void copyTo(BitBoard target)
+    {
+        target.restore(bits.state());
+    }
+
+    /**
+     * Returns the position in a fixed size binary form (see PositionCodec),
+     * 57 bytes for the two player board
+     * @return - the position as bytes
+     */
+    public byte[] toBytes()
+    {
+        return PositionCodec.toBytes(bits);
+    }
+
+    /**
+     * Creates a board holding a position written by toBytes
+     * @param data - the position as bytes
+     * @return - a board holding the position
+     * @throws IllegalArgumentException - when the bytes do not hold a position
+     */
+    public static BlokusBoard fromBytes(byte[] data)
+    {
+        BlokusBoard b = new BlokusBoard();
+        PositionCodec.fromBytes(b.bits, data);
+        b.syncFromBits();
+        return b;
+    }
+
+    /**
+     * Returns the position in a short text notation (see PositionCodec), for example
+     * "14/14/14/14/4a9/14/14/14/14/9b4/14/14/14/14 a - 1,1"
+     * @return - the position as text
+     */
+    public String toNotation()
+    {
+        return PositionCodec.toText(bits);
+    }
+
+    /**
+     * Creates a board holding a position written by toNotation
+     * @param text - the position as text
+     * @return - a board holding the position
+     * @throws IllegalArgumentException - when the text does not hold a position
+     */
+    public static BlokusBoard fromNotation(String text)
+    {
+        BlokusBoard b = new BlokusBoard();
+        PositionCodec.fromText(b.bits, text);
+        b.syncFromBits();
+        return b;
+    }
+
+    /**
+     * Rebuilds the grid, the used shapes and the status from the bitboard.
+     * Moves made with doMove before can no longer be undone.
+     */
+    private void syncFromBits()
+    {
+        history.clear();
+        for(int r=0; r < numRows(); r++)
+            for(int c=0; c < numCols(); c++)
+            {
+                int owner = bits.owner(c, r);
+                board[r][c] = (owner < 0) ? EMPTY : color(owner);
+            }
         for(int i=0; i<orangeUsedShapes.length;i++)
         {
-            orangeUsedShapes[i]=b.getOrangeUsedShapes()[i];
-            purpleUsedShapes[i]=b.getPurpleUsedShapes()[i];
+            orangeUsedShapes[i] = (bits.used(player(ORANGE)) & (1L << i)) != 0;
+            purpleUsedShapes[i] = (bits.used(player(PURPLE)) & (1L << i)) != 0;
         }
+        updateStatus();
     }
 
     /**
@@ -100,7 +312,7 @@ public class BlokusBoard
      * @return true when orange skipped its last turn
      */
     public boolean getOrangeSkipped() {
-        return orangeSkipped;
+        return bits.skipped(player(ORANGE));
     }
 
     /**
@@ -108,7 +320,7 @@ public class BlokusBoard
      * @return - true when purple skipped its last turn
      */
     public boolean getPurpleSkipped() {
-        return purpleSkipped;
+        return bits.skipped(player(PURPLE));
     }
 
     /**
@@ -120,11 +332,14 @@ public class BlokusBoard
     }
 
     /**
-     * returns the 2D array of the board
+     * returns the 2D array of the board.
+     * The array is kept in step with the bitboard used for the rules, so it should be treated as read only.
+     * A board from shareCopy gets its own copy of the state first.
      * @return - the game board
      */
     public int[][] getBoard()
     {
+        ensureOwned();
         return board;
     }
 
@@ -136,52 +351,140 @@ public class BlokusBoard
      */
     public int status()
     {
-        if(!orangeSkipped || !purpleSkipped)
-            return PLAYING;
+        return status;
+    }
+
+    /**
+     * Works out the status of the game from the skips and the squares each color placed
+     */
+    private void updateStatus()
+    {
+        if(!getOrangeSkipped() || !getPurpleSkipped())
+            status = PLAYING;
         else
         {
-            int orangeCount = 101;
-            int purpleCount = 101;
-
-            for(int row=0; row < numRows(); row++)
-                for(int col=0; col < numCols(); col++)
-                {
-                    if(board[row][col] == ORANGE)
-                        orangeCount--;
-                    if(board[row][col] == PURPLE)
-                        purpleCount--;
-
-                }
-            if(purpleCount==orangeCount)
+            long leaders = bits.leaders();
+            if(Long.bitCount(leaders) > 1)
                 status = TIE;
-            else if(orangeCount<purpleCount)
+            else if(leaders == 1L << player(ORANGE))
                 status = ORANGE_WINS;
             else
                 status = PURPLE_WINS;
-
-            return status;
         }
     }
 
+    /**
+     * Returns the number of squares a color has placed. It does not change the board
+     * and costs a single read, so it can be used to score every position a search looks at.
+     * @param color - ORANGE or PURPLE
+     * @return - the number of squares on the board belonging to the color
+     */
+    public int score(int color)
+    {
+        return bits.count(player(color));
+    }
+
     /**
      * Returns a text representation of the board
      * @return - text containing the 2d array of pieces on the game board
      */
     public String toString()
     {
-        String s = "status "+status+"\n";
+        StringBuilder s = new StringBuilder(16 + numRows() * (numCols() + 1));
+        s.append("status ").append(status).append('\n');
         for(int row=0; row < numRows(); row++){
             for(int col=0; col < numCols(); col++) {
                 if(board[row][col] == PURPLE)
-                    s+="P";
+                    s.append('P');
                 else if(board[row][col] == ORANGE)
-                    s+="B";
+                    s.append('B');
                 else
-                    s+="-";
+                    s.append('-');
             }
-            s+="\n";
+            s.append('\n');
         }
-        return s;
+        return s.toString();
+    }
+
+    /**
+     * Returns a 64 bit zobrist hash of the position. It covers the pieces on the board,
+     * the pieces each color has used, whose turn it is and the skip flags, and is
+     * updated as moves are made so reading it is free.
+     * @return - hash of the position
+     */
+    public long hash()
+    {
+        return bits.hash();
+    }
+
+    /**
+     * Returns the hash of the canonical form of the position. The board looks the same
+     * reflected across its main diagonal (both starting points are on it), so a position
+     * and its reflection have the same canonical hash. Opening books and move caches keyed
+     * on it find both.
+     * @return - hash of the canonical form
+     */
+    public long canonicalHash()
+    {
+        return bits.canonicalHash();
+    }
+
+    /**
+     * Returns the symmetry that takes this position to its canonical form
+     * @return - BitBoard.IDENTITY or BitBoard.TRANSPOSE
+     */
+    public int symmetry()
+    {
+        return bits.symmetry();
+    }
+
+    /**
+     * Moves a packed move through a symmetry. To store a move under canonicalHash, transform
+     * it with symmetry(); to use a stored move, transform it again with the symmetry() of the
+     * position it is used in.
+     * @param packed - packed move (see Move.pack) that fits on the board, or BitBoard.PASS
+     * @param symmetry - BitBoard.IDENTITY or BitBoard.TRANSPOSE
+     * @return - the packed move seen through the symmetry
+     */
+    public int transformMove(int packed, int symmetry)
+    {
+        if(packed == BitBoard.PASS || symmetry == BitBoard.IDENTITY)
+            return packed;
+        return placements.packed(bits.transform(placements.idOfPacked(packed), symmetry));
+    }
+
+    /**
+     * Moves a move through a symmetry, see transformMove(int,int)
+     * @param move - a move that fits on the board
+     * @param symmetry - BitBoard.IDENTITY or BitBoard.TRANSPOSE
+     * @return - the move seen through the symmetry
+     */
+    public Move transformMove(Move move, int symmetry)
+    {
+        return Move.fromPacked(transformMove(move.toPacked(), symmetry));
+    }
+
+    /**
+     * Returns a hash code based on the position (see hash)
+     * @return - hash code of the position
+     */
+    public int hashCode()
+    {
+        long h = bits.hash();
+        return (int)(h ^ (h >>> 32));
+    }
+
+    /**
+     * Compares the position on this board to another board's position
+     * @param o - the other board
+     * @return - true when o is a board with the same pieces, used pieces, turn and skip flags
+     */
+    public boolean equals(Object o)
+    {
+        if(o instanceof BlokusBoard)
+            return bits.samePosition(((BlokusBoard)o).bits);
+        else
+            return false;
     }
 
     /**
@@ -207,15 +510,17 @@ public class BlokusBoard
      */
     public void reset()
     {
+        ensureOwned();
         for(int r=0; r < numRows(); r++)
             for(int c=0; c < numCols(); c++)
             {
                 board[r][c] = EMPTY;
             }
-        turn = ORANGE;
-        orangeSkipped=purpleSkipped=false;
+        bits.clear();
+        history.clear();
         for(int i=0; i<orangeUsedShapes.length;i++)
             orangeUsedShapes[i]=purpleUsedShapes[i]=false;
+        updateStatus();
     }
 
     /**
@@ -224,6 +529,7 @@ public class BlokusBoard
      * @return a list of which pieces have or have not been used by orange.
      */
     public boolean[] getOrangeUsedShapes() {
+        ensureOwned();
         return orangeUsedShapes;
     }
 
@@ -233,6 +539,7 @@ public class BlokusBoard
      * @return a list of which pieces have or have not been used by purple.
      */
     public boolean[] getPurpleUsedShapes() {
+        ensureOwned();
         return purpleUsedShapes;
     }
 
@@ -333,14 +640,14 @@ public class BlokusBoard
             }
 
         // draw move positions for Orange
-        if(turn==ORANGE)
+        if(getTurn()==ORANGE)
             for(IntPoint ip: moveLocations(ORANGE))
             {
                 g.setColor(Color.ORANGE);
                 g.fillOval(offSetX+ip.getX()*LARGE_DIM+4,offSetY+ip.getY()*LARGE_DIM+4,LARGE_DIM-8,LARGE_DIM-8);
             }
         // draw move positions for Purplue
-        if(turn==PURPLE)
+        if(getTurn()==PURPLE)
             for(IntPoint ip: moveLocations(PURPLE))
             {
                 g.setColor(purple);
@@ -373,38 +680,18 @@ public class BlokusBoard
      */
     public boolean isValidMove(Move move, int color)
     {
-        if(turn==color)
+        if(getTurn()==color)
         {
             if(((color==ORANGE)?orangeUsedShapes:purpleUsedShapes)[move.getPieceNumber()]==true) {
                 //System.out.println("*Shape already in used for color "+color);
                 return false;
             }
-            int leftC = move.getPoint().getX();
-            int topR = move.getPoint().getY();
-            ArrayList<IntPoint> coloredSpots = new ArrayList<>();
-            boolean[][] shape = shapes.get(move.getPieceNumber()).manipulatedShape(move.isFlip(),move.getRotation());
-            for(int r=0; r<shape.length; r++)
-                for(int c=0; c<shape[0].length; c++)
-                    if(shape[r][c]) {
-                        coloredSpots.add(new IntPoint(leftC + c, topR + r));
-                    }
-            if(color==ORANGE && coloredSpots.contains(new IntPoint(4,4))&& board[4][4]==EMPTY)
-                return true;
-            else if(color==PURPLE && coloredSpots.contains(new IntPoint(9,9))&& board[9][9]==EMPTY)
-                return true;
-            else if(!sharePoint(coloredSpots,moveLocations(color))) {
-                //System.out.println("*Not on a valid move location");
+            int id = placements.find(move);
+            if(id < 0) {
+                //System.out.println("*not in grid");
                 return false;
             }
-            else
-            {
-                for(IntPoint p: coloredSpots)
-                    if(!isInGrid(p.getX(),p.getY()) || board[p.getY()][p.getX()]!=EMPTY || !notOrthogonalToSelf(p.getX(),p.getY(),color)) {
-                        //System.out.println("*not in grid or not empty or is orthogonal");
-                        return false;
-                    }
-                return true;
-            }
+            return bits.isLegal(player(color), id);
         }
         else
         {
@@ -414,20 +701,191 @@ public class BlokusBoard
     }
 
     /**
-     * Changes which turn it is
+     * Returns every distinct legal move for a color. The returned list is reused by
+     * the next call to this method, so copy anything that needs to be kept.
+     * Moves are packed (see Move.pack), use toMove to turn one into a Move.
+     * @param color - the color that wants to move
+     * @return - the legal moves, empty when it is not color's turn or they have no moves
      */
-    public void changeTurns()
+    public MoveList legalMoves(int color)
     {
-        if(turn==ORANGE) {
-
-            turn = PURPLE;
+        if(legalMoves==null)
+            legalMoves = new MoveList();
+        legalMoves.clear();
+        return legalMoves(color, legalMoves);
+    }
 
+    /**
+     * Adds every distinct legal move for a color to the provided list
+     * @param color - the color that wants to move
+     * @param out - the list to add the moves to (it is not cleared first)
+     * @return - the provided list
+     */
+    public MoveList legalMoves(int color, MoveList out)
+    {
+        if(getTurn()==color)
+        {
+            int start = out.size();
+            bits.legalMoves(player(color), available(color), out);
+            for(int i=start; i<out.size(); i++)
+                out.set(i, placements.packed(out.get(i)));
         }
-        else
+        return out;
+    }
+
+    /**
+     * Returns if a color has any legal move. Stops at the first legal move found,
+     * so it is much cheaper than legalMoves when all that matters is if the color must skip.
+     * @param color - the color that wants to move
+     * @return - false when it is not color's turn or they have no moves, true otherwise
+     */
+    public boolean hasLegalMove(int color)
+    {
+        return getTurn()==color && bits.hasLegalMove(player(color), available(color));
+    }
+
+    /**
+     * Returns a generator that hands out the legal moves of a color in batches, largest
+     * pieces first, working out each batch only when it is needed (see StagedMoveGenerator).
+     * The board must not change while the generator is used, except for moves that are
+     * undone before the next move is asked for.
+     * @param color - the color that wants to move
+     * @param generator - a generator from an earlier call to reuse, or null to make a new one
+     * @return - the generator, with no moves when it is not color's turn
+     */
+    public StagedMoveGenerator stagedMoves(int color, StagedMoveGenerator generator)
+    {
+        if(generator == null || generator.board() != bits)
+            generator = new StagedMoveGenerator(bits);
+        generator.start(player(color), (getTurn()==color) ? available(color) : 0);
+        return generator;
+    }
+
+    /**
+     * Returns the number of distinct legal moves a color would have if it were their turn,
+     * without building a list. Unlike legalMoves it also counts for the color that is not
+     * to move, so an evaluator can compare the mobility of both sides.
+     * @param color - ORANGE or PURPLE
+     * @return - the number of legal moves
+     */
+    public int countLegalMoves(int color)
+    {
+        return bits.countLegalMoves(player(color), available(color), null);
+    }
+
+    /**
+     * Returns the number of distinct legal moves a color would have with each piece
+     * if it were their turn. Used pieces have no moves.
+     * @param color - ORANGE or PURPLE
+     * @param perPiece - array with an entry for every shape, filled with the counts
+     * @return - the total number of legal moves
+     */
+    public int pieceMobility(int color, int[] perPiece)
+    {
+        return bits.countLegalMoves(player(color), available(color), perPiece);
+    }
+
+    /**
+     * Returns the cells a color can never place a piece on again: cells that are taken
+     * or touch an edge of the color's pieces, and cells too far from all of the color's
+     * corners for its remaining pieces to reach.
+     * @param color - ORANGE or PURPLE
+     * @return - [row][col] true for every dead cell
+     */
+    public boolean[][] deadCells(int color)
+    {
+        BoardGeometry geo = bits.geometry();
+        long[] dead = new long[geo.words()];
+        bits.deadCells(player(color), dead, 0);
+        boolean[][] cells = new boolean[numRows()][numCols()];
+        for(int r=0; r<numRows(); r++)
+            for(int c=0; c<numCols(); c++)
+                cells[r][c] = Bits.get(dead, 0, geo.index(c, r));
+        return cells;
+    }
+
+    /**
+     * Stops move generation and moveLocations from looking at cells and corners a color
+     * can never use again (see deadCells). The legal moves of the color do not change.
+     * @param color - ORANGE or PURPLE
+     */
+    public void pruneDeadCells(int color)
+    {
+        ensureOwned();
+        bits.pruneDeadCells(player(color));
+    }
+
+    /**
+     * Returns the pieces a color has not used yet
+     * @param color - ORANGE or PURPLE
+     * @return - a mask with bit k set when piece k is unused
+     */
+    private long available(int color)
+    {
+        boolean[] used = (color==ORANGE)?orangeUsedShapes:purpleUsedShapes;
+        long available = 0;
+        for(int i=0; i<used.length; i++)
+            if(!used[i])
+                available |= 1L << i;
+        return available;
+    }
+
+    /**
+     * Turns a packed move from legalMoves into a Move
+     * @param move - packed move
+     * @return - the move
+     */
+    public Move toMove(int move)
+    {
+        return Move.fromPacked(move);
+    }
+
+    /**
+     * Makes a move from legalMoves (or PASS to skip) for the color whose turn it is,
+     * remembering enough to undo it. The move is not validated.
+     * Used by searches to walk the game tree on one board instead of copying it.
+     * @param packed - a packed move from legalMoves, or BitBoard.PASS
+     */
+    public void doMove(int packed)
+    {
+        ensureOwned();
+        int move = (packed == BitBoard.PASS) ? BitBoard.PASS : placements.idOfPacked(packed);
+        if(move != BitBoard.PASS)
         {
+            setGrid(move, getTurn());
+            ((getTurn()==ORANGE)?orangeUsedShapes:purpleUsedShapes)[placements.piece(move)]=true;
+        }
+        bits.doMove(move);
+        history.add(move);
+        updateStatus();
+    }
 
-            turn = ORANGE;
+    /**
+     * Undoes the last doMove that has not been undone, restoring the pieces,
+     * used pieces, turn and skip flags exactly. Only moves made with doMove can be undone,
+     * and the board must not be changed in other ways between doMove and undoMove.
+     */
+    public void undoMove()
+    {
+        ensureOwned();
+        bits.undoMove();
+        int move = history.get(history.size()-1);
+        history.removeLast();
+        if(move != BitBoard.PASS)
+        {
+            setGrid(move, EMPTY);
+            ((getTurn()==ORANGE)?orangeUsedShapes:purpleUsedShapes)[placements.piece(move)]=false;
         }
+        updateStatus();
+    }
+
+    /**
+     * Changes which turn it is
+     */
+    public void changeTurns()
+    {
+        ensureOwned();
+        bits.nextTurn();
     }
 
     /**
@@ -438,30 +896,22 @@ public class BlokusBoard
      */
     public boolean makeMove(Move move, int color)
     {
+        ensureOwned();
         if(isValidMove(move, color))
         {
-            int leftC = move.getPoint().getX();
-            int topR = move.getPoint().getY();
-
-            boolean[][] shape = shapes.get(move.getPieceNumber()).manipulatedShape(move.isFlip(),move.getRotation());
-            for(int r=0; r<shape.length; r++)
-                for(int c=0; c<shape[0].length; c++)
-                    if(shape[r][c])
-                        board[topR+r][leftC+c]=color;
+            int id = placements.find(move);
+            setGrid(id, color);
+            bits.play(id);
 
             ((color==ORANGE)?orangeUsedShapes:purpleUsedShapes)[move.getPieceNumber()]=true;
-            if(color==ORANGE)
-                orangeSkipped=false;
-            else if(color==PURPLE)
-                purpleSkipped=false;
-            changeTurns();
+            updateStatus();
             return true;
         }
         else {
-            if(color==ORANGE && turn==ORANGE) {
+            if(color==ORANGE && getTurn()==ORANGE) {
                 orangeSkips();
                 changeTurns();
-            }else if(color==PURPLE && turn==PURPLE) {
+            }else if(color==PURPLE && getTurn()==PURPLE) {
                 purpleSkips();
                 changeTurns();
             }
@@ -478,16 +928,15 @@ public class BlokusBoard
      */
     public void placePiece(Move move, int color)
     {
+        ensureOwned();
 
         try {
-            int leftC = move.getPoint().getX();
-            int topR = move.getPoint().getY();
-
-            boolean[][] shape = shapes.get(move.getPieceNumber()).manipulatedShape(move.isFlip(), move.getRotation());
-            for (int r = 0; r < shape.length; r++)
-                for (int c = 0; c < shape[0].length; c++)
-                    if (shape[r][c])
-                        board[topR + r][leftC + c] = color;
+            int id = placements.find(move);
+            if(id < 0)
+                throw new IndexOutOfBoundsException("piece does not fit on the board at "+move.getPoint());
+            setGrid(id, color);
+            bits.place(player(color), id);
+            updateStatus();
         }
         catch(Exception e)
         {
@@ -505,16 +954,15 @@ public class BlokusBoard
      */
     public void removePiece(Move move)
     {
+        ensureOwned();
 
         try {
-            int leftC = move.getPoint().getX();
-            int topR = move.getPoint().getY();
-
-            boolean[][] shape = shapes.get(move.getPieceNumber()).manipulatedShape(move.isFlip(), move.getRotation());
-            for (int r = 0; r < shape.length; r++)
-                for (int c = 0; c < shape[0].length; c++)
-                    if (shape[r][c])
-                        board[topR + r][leftC + c] = EMPTY;
+            int id = placements.find(move);
+            if(id < 0)
+                throw new IndexOutOfBoundsException("piece does not fit on the board at "+move.getPoint());
+            setGrid(id, EMPTY);
+            bits.remove(id);
+            updateStatus();
         }
         catch(Exception e)
         {
@@ -540,45 +988,7 @@ public class BlokusBoard
      * @return which players turn it is
      */
     public int getTurn() {
-        return turn;
-    }
-
-    /**
-     * Load all the blockus shapes into the shapes arraylist. The file this method
-     * loads from in shapes.txt
-     */
-    private static void loadShapes()
-    {
-        shapes = new ArrayList<>();
-        try
-        {
-            File f = new File("shapes.txt");
-            Scanner fromFile = new Scanner(f);
-
-            while(fromFile.hasNextLine())
-            {
-                ArrayList<String> lines = new ArrayList<>();
-                while(fromFile.hasNextLine())
-                {
-                    String line= fromFile.nextLine();
-
-                    if(line.equals(""))
-                        break;
-                    lines.add(line);
-                }
-
-                boolean[][] data = new boolean[lines.size()][lines.get(0).length()];
-                for(int r=0; r<data.length; r++)
-                    for(int c=0; c<data[0].length; c++)
-                        data[r][c] = lines.get(r).charAt(c)=='*';
-                shapes.add(new Shape(data));
-            }
-        }
-        catch(Exception e)
-        {
-            System.out.println("Error Loading Shapes:");
-            e.printStackTrace();
-        }
+        return color(bits.turn());
     }
 
     /**
@@ -586,38 +996,18 @@ public class BlokusBoard
      * @param color - the color that wants to move
      * @return returns an empty ArrayList when it is not colors's turn
      * or they have no moves, otherwise the list will include all the points where
-     * pieces might be able to be placed.
+     * pieces might be able to be placed. Each point is listed once, in row order.
      */
     public ArrayList<IntPoint> moveLocations(int color)
     {
         ArrayList<IntPoint> movePoints = new ArrayList<>();
-        if(color==ORANGE && board[4][4]==EMPTY) {
-            movePoints.add(new IntPoint(4,4));
-            return movePoints;
-        }
-        else if(color==PURPLE && board[9][9]==EMPTY)
-        {
-            movePoints.add(new IntPoint(9,9));
-            return movePoints;
-        }
-        else if(color!=turn)
+        if(color!=getTurn() && !bits.startIsEmpty(player(color)))
             return movePoints;
-        else {
-            for (int r = 0; r < board.length; r++)
-                for (int c = 0; c < board[0].length; c++) {
-                    if (board[r][c] == EMPTY) {
-                        for (int cr = -1; cr <= 1; cr += 2)
-                            for (int cc = -1; cc <= 1; cc += 2) {
-                                if ((isInGrid(c + cc, r + cr) && board[r + cr][c + cc] == color) &&
-                                        notOrthogonalToSelf(c, r, color)) {
-                                    movePoints.add(new IntPoint(c, r));
-                                }
-                            }
-                    }
-                }
 
-            return movePoints;
-        }
+        BoardGeometry geo = bits.geometry();
+        for(int i = bits.nextAnchor(player(color), 0); i >= 0; i = bits.nextAnchor(player(color), i + 1))
+            movePoints.add(new IntPoint(geo.col(i), geo.row(i)));
+        return movePoints;
     }
 
     /**
@@ -631,10 +1021,41 @@ public class BlokusBoard
      */
     public boolean notOrthogonalToSelf(int c, int r, int color)
     {
-        return (!isInGrid(c-1, r) || board[r][c-1]!=color) &&
-                (!isInGrid(c+1, r) || board[r][c+1]!=color) &&
-                (!isInGrid(c, r-1) || board[r-1][c]!=color) &&
-                (!isInGrid(c, r+1) || board[r+1][c]!=color);
+        return !bits.touchesEdge(player(color), c, r);
+    }
+
+    /**
+     * Returns the bitboard player number of a color
+     * @param color - ORANGE or PURPLE
+     * @return - 0 for orange, 1 for purple
+     */
+    private static int player(int color)
+    {
+        return (color==ORANGE)?0:1;
+    }
+
+    /**
+     * Returns the color of a bitboard player number
+     * @param player - 0 or 1
+     * @return - ORANGE for 0, PURPLE for 1
+     */
+    private static int color(int player)
+    {
+        return (player==0)?ORANGE:PURPLE;
+    }
+
+    /**
+     * Sets the cells of a placement to a color on the 2D grid
+     * @param id - placement id of the move
+     * @param color - ORANGE, PURPLE or EMPTY
+     */
+    private void setGrid(int id, int color)
+    {
+        BoardGeometry geo = placements.geometry();
+        long[] footprints = placements.footprints();
+        int off = id * geo.words();
+        for(int i = Bits.nextSetBit(footprints, off, geo.words(), 0); i >= 0; i = Bits.nextSetBit(footprints, off, geo.words(), i + 1))
+            board[geo.row(i)][geo.col(i)] = color;
     }
 
     /**
@@ -657,8 +1078,9 @@ public class BlokusBoard
      */
     public void orangeSkips()
     {
-        orangeSkipped=true;
-        changeTurns();
+        ensureOwned();
+        bits.skip(player(ORANGE));
+        updateStatus();
     }
 
     /**
@@ -666,7 +1088,8 @@ public class BlokusBoard
      */
     public void purpleSkips()
     {
-        purpleSkipped=true;
-        changeTurns();
+        ensureOwned();
+        bits.skip(player(PURPLE));
+        updateStatus();
     }
 }
\ No newline at end of file
@@ -0,0 +1,261 @@
+/**
+ * Describes how a rectangular game board is laid out inside a bitboard.
+ * Cells are numbered row by row and every row is followed by one padding
+ * column that never holds a piece. The padding column keeps sideways shifts
+ * of a mask from wrapping a cell onto the next row, so neighbor masks can be
+ * built with plain shifts followed by an AND with the valid cell mask.
+ */
+public class BoardGeometry
+{
+    // the 14x14 board used by the two player game
+    public static final BoardGeometry DUO = new BoardGeometry(14, 14, new int[][]{{4,4},{9,9}});
+    // the 20x20 board used by the four player game, starting in the corners and going clockwise
+    public static final BoardGeometry CLASSIC = new BoardGeometry(20, 20, new int[][]{{0,0},{19,0},{19,19},{0,19}});
+
+    // number of rows on the board
+    private final int rows;
+    // number of columns on the board
+    private final int cols;
+    // number of bits used by a row (the columns plus the padding column)
+    private final int stride;
+    // number of longs needed to store one mask
+    private final int words;
+    // mask of every real (non padding) cell
+    private final long[] valid;
+    // bit index of each player's starting cell
+    private final int[] startCells;
+
+    /**
+     * Creates the geometry of a board
+     * @param rows - number of rows
+     * @param cols - number of columns
+     * @param starts - the {column,row} starting point of each player, in turn order
+     * @throws IllegalArgumentException - when the board is empty, there are no players or
+     * more than 8, or a starting point is off the board
+     */
+    public BoardGeometry(int rows, int cols, int[][] starts)
+    {
+        if(rows <= 0 || cols <= 0 || cols > 255 || rows > 255)
+            throw new IllegalArgumentException("bad board size "+cols+"x"+rows);
+        if(starts.length == 0 || starts.length > 8)
+            throw new IllegalArgumentException("1 to 8 players are supported, got "+starts.length);
+        this.rows = rows;
+        this.cols = cols;
+        this.stride = cols + 1;
+        this.words = (rows * stride + 63) / 64;
+
+        valid = new long[words];
+        for(int r=0; r<rows; r++)
+            for(int c=0; c<cols; c++)
+                Bits.set(valid, 0, index(c, r));
+
+        startCells = new int[starts.length];
+        for(int p=0; p<starts.length; p++)
+        {
+            if(!isInGrid(starts[p][0], starts[p][1]))
+                throw new IllegalArgumentException("start "+starts[p][0]+","+starts[p][1]+" of player "+p+" is off the board");
+            startCells[p] = index(starts[p][0], starts[p][1]);
+        }
+    }
+
+    /**
+     * Returns a standard board by name
+     * @param name - "duo" or "classic", case is ignored
+     * @return - the geometry of the board
+     * @throws IllegalArgumentException - when the name is not a standard board
+     */
+    public static BoardGeometry named(String name)
+    {
+        if(name.equalsIgnoreCase("duo"))
+            return DUO;
+        if(name.equalsIgnoreCase("classic"))
+            return CLASSIC;
+        throw new IllegalArgumentException("unknown board "+name+", expected duo or classic");
+    }
+
+    /**
+     * Returns the number of rows on the board
+     * @return - number of rows
+     */
+    public int rows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns on the board
+     * @return - number of columns
+     */
+    public int cols()
+    {
+        return cols;
+    }
+
+    /**
+     * Returns the number of bits used by one row, including the padding column
+     * @return - distance in bits between two vertically adjacent cells
+     */
+    public int stride()
+    {
+        return stride;
+    }
+
+    /**
+     * Returns the number of longs used to store a mask of this board
+     * @return - number of longs per mask
+     */
+    public int words()
+    {
+        return words;
+    }
+
+    /**
+     * Returns the number of players the board has starting cells for
+     * @return - number of players
+     */
+    public int players()
+    {
+        return startCells.length;
+    }
+
+    /**
+     * Returns the bit index of a player's starting cell
+     * @param player - the player (0 based)
+     * @return - bit index of the starting cell
+     */
+    public int startCell(int player)
+    {
+        return startCells[player];
+    }
+
+    /**
+     * Returns the bit index of a cell
+     * @param c - column
+     * @param r - row
+     * @return - the bit index of the cell
+     */
+    public int index(int c, int r)
+    {
+        return r * stride + c;
+    }
+
+    /**
+     * Returns the column of a bit index
+     * @param index - bit index of a cell
+     * @return - column of the cell
+     */
+    public int col(int index)
+    {
+        return index % stride;
+    }
+
+    /**
+     * Returns the row of a bit index
+     * @param index - bit index of a cell
+     * @return - row of the cell
+     */
+    public int row(int index)
+    {
+        return index / stride;
+    }
+
+    /**
+     * Returns if the board looks the same reflected across its main diagonal:
+     * it is square and every starting cell lies on the diagonal, so swapping
+     * rows and columns gives every player the same start.
+     * @return - true when positions can be transposed
+     */
+    public boolean isTransposeSymmetric()
+    {
+        if(rows != cols)
+            return false;
+        for(int p=0; p<startCells.length; p++)
+            if(col(startCells[p]) != row(startCells[p]))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the cell a cell moves to when the board is reflected across its main diagonal.
+     * Only meaningful when the board is square.
+     * @param index - bit index of a cell
+     * @return - bit index of the cell with its row and column swapped
+     */
+    public int transpose(int index)
+    {
+        return index(row(index), col(index));
+    }
+
+    /**
+     * Returns if the provided location is on the board
+     * @param c - column
+     * @param r - row
+     * @return true if the location is on the board, false otherwise
+     */
+    public boolean isInGrid(int c, int r)
+    {
+        return c >= 0 && c < cols && r >= 0 && r < rows;
+    }
+
+    /**
+     * Returns if a bit of a mask is set, treating bits outside of the board as clear
+     * @param mask - the mask to test
+     * @param off - offset of the mask in the array
+     * @param c - column
+     * @param r - row
+     * @return - true when the location is on the board and its bit is set
+     */
+    public boolean test(long[] mask, int off, int c, int r)
+    {
+        return isInGrid(c, r) && Bits.get(mask, off, index(c, r));
+    }
+
+    /**
+     * Writes the cells orthogonally adjacent to the source cells into the destination.
+     * The source and destination must not overlap.
+     * @param src - source mask array
+     * @param so - offset of the source mask
+     * @param dst - destination mask array
+     * @param dOff - offset of the destination mask
+     */
+    public void orthogonal(long[] src, int so, long[] dst, int dOff)
+    {
+        for(int w=0; w<words; w++)
+        {
+            long above = Bits.wordShiftedRight(src, so, words, w, stride);
+            long below = Bits.wordShiftedLeft(src, so, w, stride);
+            long left  = Bits.wordShiftedRight(src, so, words, w, 1);
+            long right = Bits.wordShiftedLeft(src, so, w, 1);
+            dst[dOff + w] = (above | below | left | right) & valid[w];
+        }
+    }
+
+    /**
+     * Writes the cells diagonally adjacent to the source cells into the destination.
+     * The source and destination must not overlap.
+     * @param src - source mask array
+     * @param so - offset of the source mask
+     * @param dst - destination mask array
+     * @param dOff - offset of the destination mask
+     */
+    public void diagonal(long[] src, int so, long[] dst, int dOff)
+    {
+        for(int w=0; w<words; w++)
+        {
+            long aboveLeft  = Bits.wordShiftedRight(src, so, words, w, stride + 1);
+            long aboveRight = Bits.wordShiftedRight(src, so, words, w, stride - 1);
+            long belowLeft  = Bits.wordShiftedLeft(src, so, w, stride - 1);
+            long belowRight = Bits.wordShiftedLeft(src, so, w, stride + 1);
+            dst[dOff + w] = (aboveLeft | aboveRight | belowLeft | belowRight) & valid[w];
+        }
+    }
+
+    /**
+     * Returns the mask of every real cell. The array must not be modified.
+     * @return - mask with a bit set for every cell of the board
+     */
+    public long[] valid()
+    {
+        return valid;
+    }
+}
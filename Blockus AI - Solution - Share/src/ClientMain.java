@@ -133,7 +133,7 @@ public class ClientMain
                             }
                             else if(comFromServer.getCommand()==CommandToClient.SUCCESSFUL_MOVE)
                             {
-                                m=(Move)comFromServer.getCommandData();
+                                m=Move.fromPacked((Integer)comFromServer.getCommandData());
                                 board.makeMove(m,currentlyPlaying.getColor());
                                 Thread.sleep(moveSleepTime);
                             }
@@ -177,7 +177,7 @@ public class ClientMain
                             }
                             else if(comFromServer.getCommand()==CommandToClient.OPPONENT_MOVE)
                             {
-                                board.makeMove((Move)comFromServer.getCommandData(),getOpponentValue(currentlyPlaying.getColor()));
+                                board.makeMove(Move.fromPacked((Integer)comFromServer.getCommandData()),getOpponentValue(currentlyPlaying.getColor()));
                                 Thread.sleep(moveSleepTime);
 
                             }
@@ -207,7 +207,7 @@ public class ClientMain
                             {
                                 m = currentlyPlaying.getMove(board);
                                 os.reset();
-                                os.writeObject(new CommandToServer(CommandToServer.MOVE,m));
+                                os.writeObject(new CommandToServer(CommandToServer.MOVE,(m==null)?null:m.toPacked()));
                                 os.reset();
 
                             }
@@ -0,0 +1,465 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks the bitboard rules behind BlokusBoard against the original array based rules
+ * (LegacyBlokusBoard) by playing seeded random games on both in lockstep.
+ *
+ * Before every move it compares the status, the color to move, the grid, the used pieces,
+ * the skip flags and both colors' move locations, then asks both boards if moves are valid:
+ * moves covering each move location, moves anywhere near the board and moves the engine
+ * lists as legal. The chosen move is made on both boards and the results of makeMove compared.
+ * Most moves are legal ones, a few are skips or random moves that makeMove rejects.
+ * Each turn the position is also written with toBytes and toNotation and read back, and
+ * legal moves are made with doMove and taken back with undoMove and with restore, on the
+ * board and on a shareCopy of it, which must give back exactly the position before.
+ * Writing to the arrays a shareCopy hands out must not change the board it shares with.
+ * One legacy behavior is known to differ and is not reported, see coversPieces.
+ *
+ * The first game that disagrees is reported with the step, the moves leading up to it
+ * and a dump of both boards. Each game's moves depend only on the seed and the game
+ * number, so the report is the same for any number of threads and a game can be replayed
+ * on its own with the command line printed in the report.
+ *
+ *   java -cp out DifferentialHarness [games] [threads] [seed] [first game] [exhaustive]
+ *
+ * games defaults to 1000000 and threads to the number of cores. Normally a sample of the
+ * moves is checked each turn; with exhaustive set to true every form of every piece is
+ * tried on every move location and every legal move is checked, which is much slower.
+ */
+public class DifferentialHarness
+{
+    // games a thread takes at a time
+    private static final int BATCH = 64;
+    // moves covering each move location checked per turn when not exhaustive
+    private static final int SAMPLES = 4;
+    // random moves near the board checked per turn
+    private static final int RANDOM_MOVES = 16;
+    // legal moves from the engine checked per turn when not exhaustive
+    private static final int GENERATED = 32;
+    // legal moves made and taken back per turn when not exhaustive
+    private static final int ROUND_TRIPS = 4;
+    // more turns than a game can take, in case a game never ends
+    private static final int MAX_TURNS = 200;
+
+    // the first game that disagreed, null while every game agrees
+    private static Divergence first = null;
+
+    /**
+     * A difference between the two rules found in one game
+     */
+    private static class Divergence extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        // the game it was found in
+        final long game;
+
+        Divergence(long game, String report)
+        {
+            super(report);
+            this.game = game;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        long games = (args.length > 0) ? Long.parseLong(args[0]) : 1000000;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : 1;
+        long firstGame = (args.length > 3) ? Long.parseLong(args[3]) : 0;
+        boolean exhaustive = args.length > 4 && Boolean.parseBoolean(args[4]);
+        long endGame = firstGame + games;
+
+        AtomicLong next = new AtomicLong(firstGame);
+        AtomicLong played = new AtomicLong();
+        AtomicLong checks = new AtomicLong();
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for(int t=0; t<threads; t++)
+            pool.execute(() -> {
+                for(long batch = next.getAndAdd(BATCH); batch < endGame && batch < firstBad(); batch = next.getAndAdd(BATCH))
+                    for(long game = batch; game < Math.min(batch + BATCH, endGame) && game < firstBad(); game++)
+                    {
+                        try
+                        {
+                            checks.addAndGet(new Game(seed, game, exhaustive).play());
+                            played.incrementAndGet();
+                        }
+                        catch(Divergence d)
+                        {
+                            found(d);
+                        }
+                        catch(RuntimeException e)
+                        {
+                            found(new Divergence(game, "game "+game+" threw "+e));
+                        }
+                    }
+            });
+        pool.shutdown();
+        while(!pool.awaitTermination(10, TimeUnit.SECONDS))
+            System.out.println(played.get()+" games, "+checks.get()+" checks");
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games, %d checks in %.1f s (%.0f games/s)%n", played.get(), checks.get(), seconds, played.get() / seconds);
+        if(first != null)
+        {
+            System.out.println("DIVERGENCE");
+            System.out.println(first.getMessage());
+            System.exit(1);
+        }
+        System.out.println("no divergence");
+    }
+
+    /**
+     * Returns the number of the first game known to disagree, Long.MAX_VALUE when none has
+     */
+    private static synchronized long firstBad()
+    {
+        return (first == null) ? Long.MAX_VALUE : first.game;
+    }
+
+    /**
+     * Remembers a divergence when it is in an earlier game than any found so far
+     */
+    private static synchronized void found(Divergence d)
+    {
+        if(first == null || d.game < first.game)
+            first = d;
+    }
+
+    /**
+     * One game played on both boards
+     */
+    private static class Game
+    {
+        private final long seed;
+        private final long game;
+        private final boolean exhaustive;
+        private final SplittableRandom random;
+        private final LegacyBlokusBoard legacy = new LegacyBlokusBoard();
+        private final BlokusBoard board = new BlokusBoard();
+        // the moves made so far, for the report
+        private final ArrayList<String> moves = new ArrayList<>();
+        // the position before the current step, in BlokusBoard notation
+        private String before;
+        // what is being compared, for the report
+        private String step;
+        // number of comparisons made
+        private long checks = 0;
+
+        Game(long seed, long game, boolean exhaustive)
+        {
+            this.seed = seed;
+            this.game = game;
+            this.exhaustive = exhaustive;
+            this.random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + game);
+        }
+
+        /**
+         * Plays the game to the end
+         * @return - the number of comparisons made
+         * @throws Divergence - when the boards disagree
+         */
+        long play()
+        {
+            for(int turn=0; ; turn++)
+            {
+                before = board.toNotation();
+                step = "turn "+turn;
+                compareState();
+                if(legacy.status() != LegacyBlokusBoard.PLAYING)
+                    return checks;
+                check(turn < MAX_TURNS, "game did not end");
+
+                int color = legacy.getTurn();
+                compareMoveLocations(BlokusBoard.ORANGE);
+                compareMoveLocations(BlokusBoard.PURPLE);
+                MoveList legal = board.legalMoves(color);
+                compareValidity(color, legal);
+                compareRoundTrips(color, legal);
+
+                int choice = random.nextInt(100);
+                if(legal.isEmpty() || choice == 0)
+                {
+                    step = "turn "+turn+", "+name(color)+" skips";
+                    moves.add(name(color)+" skips");
+                    if(color == LegacyBlokusBoard.ORANGE)
+                    {
+                        legacy.orangeSkips();
+                        board.orangeSkips();
+                    }
+                    else
+                    {
+                        legacy.purpleSkips();
+                        board.purpleSkips();
+                    }
+                }
+                else
+                {
+                    Move move = board.toMove(legal.get(random.nextInt(legal.size())));
+                    if(choice == 1)
+                        do
+                            move = randomMove();
+                        while(legacy.isValidMove(move, color) && coversPieces(move));
+                    step = "turn "+turn+", "+name(color)+" makeMove "+describe(move);
+                    moves.add(name(color)+" "+describe(move));
+                    boolean made = legacy.makeMove(move, color);
+                    check(made == board.makeMove(move, color), "makeMove returned "+made+" on the legacy board");
+                }
+            }
+        }
+
+        /**
+         * Compares the status, the color to move, the grid, the used pieces and the skip flags
+         */
+        private void compareState()
+        {
+            check(legacy.status() == board.status(), "status "+legacy.status()+" vs "+board.status());
+            check(legacy.getTurn() == board.getTurn(), "turn "+legacy.getTurn()+" vs "+board.getTurn());
+            check(Arrays.deepEquals(legacy.getBoard(), board.getBoard()), "grids differ");
+            check(Arrays.equals(legacy.getOrangeUsedShapes(), board.getOrangeUsedShapes()), "orange used pieces differ");
+            check(Arrays.equals(legacy.getPurpleUsedShapes(), board.getPurpleUsedShapes()), "purple used pieces differ");
+            check(legacy.getOrangeSkipped() == board.getOrangeSkipped(), "orange skip flags differ");
+            check(legacy.getPurpleSkipped() == board.getPurpleSkipped(), "purple skip flags differ");
+        }
+
+        /**
+         * Compares the move locations of a color. The legacy board can list a location more
+         * than once, so the locations are compared as sets.
+         */
+        private void compareMoveLocations(int color)
+        {
+            TreeSet<String> expected = new TreeSet<>();
+            TreeSet<String> actual = new TreeSet<>();
+            for(IntPoint p: legacy.moveLocations(color))
+                expected.add(p.toString());
+            for(IntPoint p: board.moveLocations(color))
+                actual.add(p.toString());
+            check(expected.equals(actual), name(color)+" move locations "+expected+" vs "+actual);
+        }
+
+        /**
+         * Asks both boards if moves are valid for both colors: moves covering the move
+         * locations of the color to move, random moves, and moves the engine lists as legal.
+         * When exhaustive the moves the legacy board accepts on the move locations must
+         * cover the same cells as the legal moves listed.
+         */
+        private void compareValidity(int color, MoveList legal)
+        {
+            List<Shape> shapes = LegacyBlokusBoard.getShapes();
+            TreeSet<String> valid = new TreeSet<>();
+            for(IntPoint location: legacy.moveLocations(color))
+                if(exhaustive)
+                {
+                    for(int piece=0; piece<shapes.size(); piece++)
+                        for(int form=0; form<Shape.FORMS; form++)
+                        {
+                            boolean[][] shape = shapes.get(piece).form(form);
+                            for(int r=0; r<shape.length; r++)
+                                for(int c=0; c<shape[0].length; c++)
+                                {
+                                    Move move = new Move(piece, form, new IntPoint(location.getX() - c, location.getY() - r));
+                                    if(shape[r][c] && compareValidity(move, color))
+                                        valid.add(cells(move));
+                                }
+                        }
+                }
+                else
+                    for(int k=0; k<SAMPLES; k++)
+                        compareValidity(coveringMove(location), color);
+
+            for(int k=0; k<RANDOM_MOVES; k++)
+                compareValidity(randomMove(), color);
+
+            int listed = exhaustive ? legal.size() : Math.min(GENERATED, legal.size());
+            TreeSet<String> generated = new TreeSet<>();
+            for(int k=0; k<listed; k++)
+            {
+                Move move = board.toMove(legal.get(exhaustive ? k : random.nextInt(legal.size())));
+                check(legacy.isValidMove(move, color), "legal move "+describe(move)+" is not valid on the legacy board");
+                check(generated.add(cells(move)) || !exhaustive, "legal move "+describe(move)+" is listed twice");
+            }
+            if(exhaustive)
+            {
+                valid.removeAll(generated);
+                check(valid.isEmpty(), "valid moves covering "+valid+" are not listed by legalMoves");
+            }
+        }
+
+        /**
+         * Checks that the position survives being written as bytes and as notation and read
+         * back, and that making legal moves and taking them back with undoMove or restore,
+         * on the board or on a shared copy of it, gives back the same position. A move made
+         * with doMove must also give the same position as making it with makeMove.
+         */
+        private void compareRoundTrips(int color, MoveList legal)
+        {
+            long[] snapshot = board.snapshot();
+            check(board.equals(BlokusBoard.fromBytes(board.toBytes())), "toBytes/fromBytes changes the position");
+            BlokusBoard read = BlokusBoard.fromNotation(before);
+            check(board.equals(read) && Arrays.deepEquals(board.getBoard(), read.getBoard()), "toNotation/fromNotation changes the position");
+            check(before.equals(read.toNotation()), "notation "+read.toNotation()+" after reading "+before);
+
+            int tries = exhaustive ? legal.size() : Math.min(ROUND_TRIPS, legal.size());
+            for(int k=0; k<tries; k++)
+            {
+                int packed = legal.get(exhaustive ? k : random.nextInt(legal.size()));
+                BlokusBoard made = new BlokusBoard(board);
+                made.makeMove(board.toMove(packed), color);
+
+                board.doMove(packed);
+                check(board.equals(made) && Arrays.deepEquals(board.getBoard(), made.getBoard()),
+                        "doMove "+describe(board.toMove(packed))+" differs from makeMove");
+                board.undoMove();
+                check(Arrays.equals(snapshot, board.snapshot()), "undoMove after "+describe(board.toMove(packed))+" does not give back the position");
+
+                board.doMove(packed);
+                board.restore(snapshot);
+                check(Arrays.equals(snapshot, board.snapshot()), "restore after "+describe(board.toMove(packed))+" does not give back the position");
+
+                BlokusBoard shared = board.shareCopy();
+                shared.doMove(packed);
+                check(shared.equals(made), "doMove "+describe(board.toMove(packed))+" on a shared copy differs from makeMove");
+                check(Arrays.equals(snapshot, board.snapshot()), "doMove on a shared copy changed the board it shares with");
+                shared.undoMove();
+                check(shared.equals(board), "undoMove on a shared copy does not give back the position");
+                shared.release();
+            }
+
+            BlokusBoard view = board.shareCopy();
+            view.getBoard()[0][0] = (view.getBoard()[0][0] == BlokusBoard.EMPTY) ? BlokusBoard.ORANGE : BlokusBoard.EMPTY;
+            view.getOrangeUsedShapes()[0] = !view.getOrangeUsedShapes()[0];
+            view.getPurpleUsedShapes()[0] = !view.getPurpleUsedShapes()[0];
+            view.release();
+            check(Arrays.deepEquals(legacy.getBoard(), board.getBoard()), "grid changed by the round trips");
+            check(Arrays.equals(legacy.getOrangeUsedShapes(), board.getOrangeUsedShapes())
+                    && Arrays.equals(legacy.getPurpleUsedShapes(), board.getPurpleUsedShapes()), "used pieces changed by the round trips");
+        }
+
+        /**
+         * Asks both boards if a move is valid for each color
+         * @return - true when the move is valid for the given color
+         */
+        private boolean compareValidity(Move move, int color)
+        {
+            boolean valid = false;
+            for(int c = LegacyBlokusBoard.ORANGE; c <= LegacyBlokusBoard.PURPLE; c++)
+            {
+                boolean expected = legacy.isValidMove(move, c) && !coversPieces(move);
+                check(expected == board.isValidMove(move, c), "isValidMove("+describe(move)+", "+name(c)+") "+expected+" on the legacy board");
+                if(c == color)
+                    valid = expected;
+            }
+            return valid;
+        }
+
+        /**
+         * Returns if a move covers a cell that already holds a piece. The legacy isValidMove
+         * accepts any move covering the color's empty starting cell without looking at its
+         * other cells, so it also accepts such moves; BlokusBoard rejects them. Moves the
+         * legacy board accepts are only compared when they do not cover pieces, and none
+         * are made, so the games stay in lockstep.
+         */
+        private boolean coversPieces(Move move)
+        {
+            boolean[][] shape = LegacyBlokusBoard.getShapes().get(move.getPieceNumber()).manipulatedShape(move.isFlip(), move.getRotation());
+            for(int r=0; r<shape.length; r++)
+                for(int c=0; c<shape[0].length; c++)
+                {
+                    int x = move.getPoint().getX() + c;
+                    int y = move.getPoint().getY() + r;
+                    if(shape[r][c] && legacy.isInGrid(x, y) && legacy.getBoard()[y][x] != LegacyBlokusBoard.EMPTY)
+                        return true;
+                }
+            return false;
+        }
+
+        /**
+         * Returns a random move with one of its cells on a location
+         */
+        private Move coveringMove(IntPoint location)
+        {
+            int piece = random.nextInt(LegacyBlokusBoard.getShapes().size());
+            int form = random.nextInt(Shape.FORMS);
+            boolean[][] shape = LegacyBlokusBoard.getShapes().get(piece).form(form);
+            int r, c;
+            do
+            {
+                r = random.nextInt(shape.length);
+                c = random.nextInt(shape[0].length);
+            }
+            while(!shape[r][c]);
+            return new Move(piece, form, new IntPoint(location.getX() - c, location.getY() - r));
+        }
+
+        /**
+         * Returns a random move at a random point near the board, which may hang off its edges
+         */
+        private Move randomMove()
+        {
+            int piece = random.nextInt(LegacyBlokusBoard.getShapes().size());
+            return new Move(piece, random.nextBoolean(), random.nextInt(4),
+                    new IntPoint(random.nextInt(legacy.numCols() + 4) - 2, random.nextInt(legacy.numRows() + 4) - 2));
+        }
+
+        /**
+         * Returns the cells a move covers, as text
+         */
+        private static String cells(Move move)
+        {
+            boolean[][] shape = LegacyBlokusBoard.getShapes().get(move.getPieceNumber()).manipulatedShape(move.isFlip(), move.getRotation());
+            StringBuilder s = new StringBuilder().append(move.getPieceNumber());
+            for(int r=0; r<shape.length; r++)
+                for(int c=0; c<shape[0].length; c++)
+                    if(shape[r][c])
+                        s.append(' ').append(move.getPoint().getX() + c).append(',').append(move.getPoint().getY() + r);
+            return s.toString();
+        }
+
+        /**
+         * Throws a Divergence with a report of the game so far when a comparison failed
+         */
+        private void check(boolean agree, String what)
+        {
+            checks++;
+            if(agree)
+                return;
+            StringBuilder report = new StringBuilder();
+            report.append("game ").append(game).append(" seed ").append(seed).append(", ").append(step).append(": ").append(what).append('\n');
+            report.append("replay: java -cp out DifferentialHarness 1 1 ").append(seed).append(' ').append(game);
+            report.append(exhaustive ? " true\n" : "\n");
+            report.append("moves:\n");
+            for(String move: moves)
+                report.append("  ").append(move).append('\n');
+            report.append("position before the step (BlokusBoard.fromNotation): ").append(before).append('\n');
+            report.append("position now: ").append(board.toNotation()).append('\n');
+            report.append("legacy board now:\n").append(legacy);
+            throw new Divergence(game, report.toString());
+        }
+    }
+
+    /**
+     * Returns the name of a color
+     */
+    private static String name(int color)
+    {
+        return (color == LegacyBlokusBoard.ORANGE) ? "orange" : "purple";
+    }
+
+    /**
+     * Returns a short description of a move
+     */
+    private static String describe(Move move)
+    {
+        return "piece "+move.getPieceNumber()+" flip "+move.isFlip()+" rotation "+move.getRotation()
+                +" at "+move.getPoint().getX()+","+move.getPoint().getY();
+    }
+}
@@ -33,4 +33,9 @@ public class IntPoint implements Serializable
             return p.getX()==x && p.getY()==y;
         }
     }
+
+    public int hashCode()
+    {
+        return 31*x + y;
+    }
 }
@@ -1,31 +1,469 @@
-public class JakeAI extends Player {
+import java.util.function.Supplier;
 
-    public JakeAI(int color, String name) {
+/**
+ * An AI that looks ahead with an iterative deepening alpha-beta search.
+ *
+ * The search runs on its own BitBoard copy of the position, making and undoing moves
+ * on that one board. It searches one move deeper each iteration until the time for
+ * the move runs out and plays the best move of the deepest search. Each iteration
+ * after the first starts with a narrow window around the last score and only widens
+ * it when the score falls outside.
+ *
+ * Moves are tried best first: the move stored for the position in the transposition
+ * table, then the moves that caused a cutoff at the same depth (killers), then the
+ * rest by how often they caused cutoffs before (history) and by piece size.
+ * Positions are scored on the squares each color has placed and the corners it can
+ * still play into.
+ *
+ * With more than one thread the search is a Lazy SMP search: helper threads search the
+ * same position on their own boards, every other one a move deeper, and share the
+ * transposition table. They fill the table with results the main search then finds
+ * instead of searching again. The move played comes from the thread that completed the
+ * deepest search. The helper threads come from SearchPool, so a game never searches with
+ * more threads than there are cores.
+ */
+public class JakeAI extends Player
+{
+    // time used for a move when none is given, in milliseconds
+    public static final int DEFAULT_MILLIS = 1000;
+    // size of the transposition table in megabytes
+    public static final int TABLE_MEGABYTES = 32;
+
+    // larger than any score
+    private static final int INFINITY = 1000000;
+    // score of a won game, before adding the difference in squares
+    private static final int WIN = 100000;
+    // value of a placed square and of a corner a color can play into
+    private static final int SQUARE = 10;
+    private static final int ANCHOR = 3;
+    // half the width of the first window tried by an iteration
+    private static final int ASPIRATION = 25;
+    // deepest search, in moves
+    private static final int MAX_PLY = 64;
+    // ordering bonus per square of a piece, so larger pieces are tried first among equals
+    private static final int SIZE_BONUS = 64;
+    // number of positions searched between looks at the clock
+    private static final int CLOCK_INTERVAL = 1024;
+
+    // time for one move, in milliseconds
+    private final long millis;
+    // the placements of the two player board
+    private final PlacementTable table = PlacementTable.standard(BoardGeometry.DUO);
+    // gives the table to share with other players, null when the player has a table of its own
+    private final Supplier<TranspositionTable> sharedTable;
+    // stores the results of positions already searched, shared by every thread, created by the first getMove
+    private TranspositionTable transpositions;
+    // the number of the current search in the table
+    private int search;
+    // one search per thread, searches[0] runs on the thread calling getMove
+    private final Searcher[] searches;
+
+    // when the search has to stop, from System.nanoTime
+    private long deadline;
+    // set when the time ran out or the main search finished, every search then returns at once
+    private volatile boolean stopped;
+    // positions searched for the last move by every thread
+    private long nodes;
+    // depth of the deepest search completed for the last move
+    private int completedDepth;
+
+    /**
+     * Contructs the AI given a name and color, using DEFAULT_MILLIS and one thread for each move
+     * @param color - color the player is playing as
+     * @param name - name of the player
+     */
+    public JakeAI(int color, String name)
+    {
+        this(color, name, DEFAULT_MILLIS, 1);
+    }
+
+    /**
+     * Contructs the AI given a name, color and time for each move, searching with one thread
+     * @param color - color the player is playing as
+     * @param name - name of the player
+     * @param millis - the time to search each move for, in milliseconds
+     */
+    public JakeAI(int color, String name, long millis)
+    {
+        this(color, name, millis, 1);
+    }
+
+    /**
+     * Contructs the AI given a name, color, time for each move and number of threads
+     * @param color - color the player is playing as
+     * @param name - name of the player
+     * @param millis - the time to search each move for, in milliseconds
+     * @param threads - the number of threads to search with, at least 1
+     */
+    public JakeAI(int color, String name, long millis, int threads)
+    {
+        this(color, name, millis, threads, (Supplier<TranspositionTable>)null);
+    }
+
+    /**
+     * Contructs the AI given a name, color, time for each move, number of threads and a
+     * transposition table, which can be shared with other players, even ones playing other games
+     * @param color - color the player is playing as
+     * @param name - name of the player
+     * @param millis - the time to search each move for, in milliseconds
+     * @param threads - the number of threads to search with, at least 1, no more than SearchPool.size() + 1 are used
+     * @param transpositions - the table to use, null for a table of TABLE_MEGABYTES of its own
+     */
+    public JakeAI(int color, String name, long millis, int threads, TranspositionTable transpositions)
+    {
+        this(color, name, millis, threads, (transpositions == null) ? null : () -> transpositions);
+    }
+
+    /**
+     * Contructs the AI given a name, color, time for each move, number of threads and where
+     * to get a shared transposition table. The table is only asked for by the first getMove,
+     * so a player that never moves never creates it.
+     * @param color - color the player is playing as
+     * @param name - name of the player
+     * @param millis - the time to search each move for, in milliseconds
+     * @param threads - the number of threads to search with, at least 1, no more than SearchPool.size() + 1 are used
+     * @param sharedTable - gives the table to use, null for a table of TABLE_MEGABYTES of its own
+     */
+    public JakeAI(int color, String name, long millis, int threads, Supplier<TranspositionTable> sharedTable)
+    {
         super(color, name);
+        if(threads < 1)
+            throw new IllegalArgumentException("at least one search thread is needed, got "+threads);
+        this.millis = millis;
+        this.sharedTable = sharedTable;
+        searches = new Searcher[Math.min(threads, SearchPool.size() + 1)];
+        for(int i=0; i<searches.length; i++)
+            searches[i] = new Searcher(i);
     }
 
+    /**
+     * Returns the best move found in the time for a move
+     * @param board - the board that a move should be made on
+     * @return - a valid move, null when there is none or it is not this player's turn
+     */
     @Override
-    public int getColor() {
-        return super.getColor();
+    public Move getMove(BlokusBoard board)
+    {
+        long start = System.nanoTime();
+        deadline = start + millis * 1000000L;
+        stopped = false;
+        if(transpositions == null)
+            transpositions = (sharedTable == null) ? new TranspositionTable(TABLE_MEGABYTES) : sharedTable.get();
+        search = transpositions.newSearch();
+        byte[] position = board.toBytes();
+        for(Searcher s: searches)
+            s.setUp(position);
+
+        Searcher main = searches[0];
+        int player = (getColor() == BlokusBoard.ORANGE) ? 0 : 1;
+        if(main.bits.turn() != player || main.moves[0].isEmpty())
+            return null;
+
+        if(main.moves[0].size() > 1)
+            SearchPool.run(searches.length, i -> {
+                searches[i].deepen();
+                if(i == 0)
+                    stopped = true;
+            });
+
+        nodes = 0;
+        Searcher deepest = main;
+        for(int i=0; i<searches.length; i++)
+        {
+            nodes += searches[i].nodes;
+            if(searches[i].completedDepth > deepest.completedDepth)
+                deepest = searches[i];
+        }
+        completedDepth = deepest.completedDepth;
+        return board.toMove(table.packed(deepest.bestMove));
     }
 
-    @Override
-    public String getName() {
-        return super.getName();
+    /**
+     * The search run by one thread, with its own board, move lists and ordering tables
+     */
+    private class Searcher
+    {
+        // the number of the thread, 0 for the main search
+        private final int id;
+        // the board the search makes its moves on
+        private final BitBoard bits = new BitBoard(table);
+        // two moves per ply that last caused a cutoff
+        private final int[][] killers = new int[MAX_PLY][2];
+        // cutoff count of each player/placement, player p placement id uses index p * table.size() + id
+        private final int[] history = new int[2 * table.size()];
+        // the moves and their ordering scores at each ply
+        private final MoveList[] moves = new MoveList[MAX_PLY];
+        private final int[][] order = new int[MAX_PLY][];
+
+        // positions searched for the last move
+        private long nodes;
+        // depth of the last iteration completed for the last move
+        private int completedDepth;
+        // the best root move found so far
+        private int bestMove;
+
+        Searcher(int id)
+        {
+            this.id = id;
+            for(int ply=0; ply<MAX_PLY; ply++)
+                moves[ply] = new MoveList();
+        }
+
+        /**
+         * Sets up the board and the root moves for a new move
+         * @param position - the position, see BlokusBoard.toBytes
+         */
+        void setUp(byte[] position)
+        {
+            nodes = 0;
+            completedDepth = 0;
+            PositionCodec.fromBytes(bits, position);
+            int player = bits.turn();
+            moves[0].clear();
+            bits.legalMoves(player, bits.available(player), moves[0]);
+            bestMove = moves[0].isEmpty() ? BitBoard.PASS : moves[0].get(0);
+            for(int i=0; i<history.length; i++)
+                history[i] >>= 2;
+            for(int[] k: killers)
+                k[0] = k[1] = BitBoard.PASS;
+        }
+
+        /**
+         * Searches one move deeper each iteration until the time runs out. Helpers with an
+         * odd id start a move deeper than the main search, and only the main search stops
+         * early when the next iteration can not finish in time.
+         */
+        void deepen()
+        {
+            long start = System.nanoTime();
+            int score = 0;
+            for(int depth = 1 + (id & 1); depth<MAX_PLY && !stopped; depth++)
+            {
+                score = aspirate(depth, score);
+                if(!stopped)
+                    completedDepth = depth;
+                // a won or lost game is found at every depth from here on
+                if(Math.abs(score) >= WIN)
+                    break;
+                // the next iteration takes several times longer, so do not start one that can not finish
+                if(id == 0 && System.nanoTime() - start > (deadline - start) / 3)
+                    break;
+            }
+        }
+
+        /**
+         * Searches the root with a window around the score of the last iteration,
+         * searching again with a wider window while the score falls outside it
+         * @param depth - the depth to search to
+         * @param guess - the score of the last iteration
+         * @return - the score of the root
+         */
+        private int aspirate(int depth, int guess)
+        {
+            if(depth == 1)
+                return search(depth, 0, -INFINITY, INFINITY);
+
+            int delta = ASPIRATION;
+            int alpha = Math.max(guess - delta, -INFINITY);
+            int beta = Math.min(guess + delta, INFINITY);
+            while(true)
+            {
+                int score = search(depth, 0, alpha, beta);
+                if(stopped || (score > alpha && score < beta))
+                    return score;
+                delta *= 4;
+                if(score <= alpha)
+                    alpha = Math.max(score - delta, -INFINITY);
+                else
+                    beta = Math.min(score + delta, INFINITY);
+            }
+        }
+
+        /**
+         * Searches a position with alpha-beta
+         * @param depth - number of moves left to search
+         * @param ply - number of moves from the root
+         * @param alpha - a score the player to move can already get
+         * @param beta - a score the other player can already hold the player to move to
+         * @return - the score for the player to move, 0 when the time ran out
+         */
+        private int search(int depth, int ply, int alpha, int beta)
+        {
+            if((++nodes % CLOCK_INTERVAL) == 0 && System.nanoTime() > deadline)
+                stopped = true;
+            if(stopped)
+                return 0;
+            if(bits.isGameOver())
+                return result();
+            if(depth == 0 || ply == MAX_PLY - 1)
+                return evaluate();
+
+            long hash = bits.hash();
+            long entry = transpositions.probe(hash);
+            int hashMove = BitBoard.PASS;
+            if(entry != 0)
+            {
+                hashMove = TranspositionTable.move(entry);
+                if(ply > 0 && TranspositionTable.depth(entry) >= depth)
+                {
+                    int score = TranspositionTable.score(entry);
+                    int bound = TranspositionTable.bound(entry);
+                    if(bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && score >= beta)
+                            || (bound == TranspositionTable.UPPER && score <= alpha))
+                        return score;
+                }
+            }
+
+            int player = bits.turn();
+            MoveList list = moves[ply];
+            if(ply > 0)
+            {
+                list.clear();
+                bits.legalMoves(player, bits.available(player), list);
+            }
+            if(list.isEmpty())
+            {
+                bits.doMove(BitBoard.PASS);
+                int score = -search(depth - 1, ply + 1, -beta, -alpha);
+                bits.undoMove();
+                return score;
+            }
+
+            int[] scores = orderScores(ply, player, list, hashMove);
+            int alphaStart = alpha;
+            int best = -INFINITY;
+            int move = list.get(0);
+            for(int i=0; i<list.size(); i++)
+            {
+                int id = pickNext(list, scores, i);
+                bits.doMove(id);
+                int score = -search(depth - 1, ply + 1, -beta, -alpha);
+                bits.undoMove();
+                if(stopped)
+                    return 0;
+                if(score > best)
+                {
+                    best = score;
+                    move = id;
+                    if(score > alpha)
+                    {
+                        alpha = score;
+                        if(ply == 0)
+                            bestMove = id;
+                        if(alpha >= beta)
+                        {
+                            if(killers[ply][0] != id)
+                            {
+                                killers[ply][1] = killers[ply][0];
+                                killers[ply][0] = id;
+                            }
+                            history[player * table.size() + id] += depth * depth;
+                            break;
+                        }
+                    }
+                }
+            }
+
+            int bound = (best <= alphaStart) ? TranspositionTable.UPPER : (best >= beta) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            transpositions.store(hash, move, depth, bound, best, search);
+            return best;
+        }
+
+        /**
+         * Gives every move at a ply a score to order it by: the hash move first, then the
+         * killers, then the rest by history and piece size
+         * @return - the scores, index i for the move at index i of the list
+         */
+        private int[] orderScores(int ply, int player, MoveList list, int hashMove)
+        {
+            if(order[ply] == null || order[ply].length < list.size())
+                order[ply] = new int[Math.max(256, list.size() * 2)];
+            int[] scores = order[ply];
+            for(int i=0; i<list.size(); i++)
+            {
+                int id = list.get(i);
+                if(id == hashMove)
+                    scores[i] = Integer.MAX_VALUE;
+                else if(id == killers[ply][0])
+                    scores[i] = Integer.MAX_VALUE - 1;
+                else if(id == killers[ply][1])
+                    scores[i] = Integer.MAX_VALUE - 2;
+                else
+                    scores[i] = Math.min(history[player * table.size() + id], Integer.MAX_VALUE / 2) + table.cellCount(id) * SIZE_BONUS;
+            }
+            return scores;
+        }
+
+        /**
+         * Moves the best scored of the moves from index i on to index i and returns it
+         */
+        private int pickNext(MoveList list, int[] scores, int i)
+        {
+            int best = i;
+            for(int j=i+1; j<list.size(); j++)
+                if(scores[j] > scores[best])
+                    best = j;
+            int move = list.get(best);
+            int score = scores[best];
+            list.set(best, list.get(i));
+            scores[best] = scores[i];
+            list.set(i, move);
+            scores[i] = score;
+            return move;
+        }
+
+        /**
+         * Scores a position for the player to move: the squares and playable corners of
+         * the player less those of the other players
+         */
+        private int evaluate()
+        {
+            int player = bits.turn();
+            int score = 0;
+            for(int p=0; p<bits.geometry().players(); p++)
+            {
+                int value = SQUARE * bits.count(p) + ANCHOR * Bits.popCount(bits.state(), bits.anchorsAt(p), bits.geometry().words());
+                score += (p == player) ? value : -value;
+            }
+            return score;
+        }
+
+        /**
+         * Scores a finished game for the player to move: WIN plus the lead in squares for a
+         * win, minus WIN plus the lead for a loss and 0 for a tie
+         */
+        private int result()
+        {
+            int player = bits.turn();
+            int lead = 0;
+            for(int p=0; p<bits.geometry().players(); p++)
+                lead += (p == player) ? bits.count(p) : -bits.count(p);
+            return (lead > 0) ? WIN + lead : (lead < 0) ? -WIN + lead : 0;
+        }
     }
 
-    @Override
-    public String toString() {
-        return super.toString();
+    /**
+     * Returns the number of positions searched for the last move
+     * @return - number of positions
+     */
+    public long nodes()
+    {
+        return nodes;
     }
 
-    @Override
-    public Move getMove(BlokusBoard board) {
-        return null;
+    /**
+     * Returns the depth of the deepest search completed for the last move
+     * @return - the depth in moves
+     */
+    public int completedDepth()
+    {
+        return completedDepth;
     }
 
     @Override
-    public Player freshCopy() {
-        return null;
+    public Player freshCopy()
+    {
+        return new JakeAI(getColor(), getName(), millis, searches.length, sharedTable);
     }
 }
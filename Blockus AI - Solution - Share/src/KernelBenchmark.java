@@ -0,0 +1,158 @@
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Times the scalar and vector mask kernels (see MaskKernels) on positions from random games.
+ * For every position it finds the legal placements of each remaining piece of the player to
+ * move by testing each placement's footprint, and puts a piece down.
+ * The shift based generator BitBoard.legalMoves is timed as well for comparison.
+ *
+ * Run with the vector kernels built (see VectorKernels):
+ *   java --add-modules jdk.incubator.vector -cp out KernelBenchmark [games] [rounds] [duo|classic]
+ * Without them only the scalar kernels are timed.
+ */
+public class KernelBenchmark
+{
+    public static void main(String[] args)
+    {
+        int games = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+        BoardGeometry geo = BoardGeometry.named((args.length > 2) ? args[2] : "duo");
+
+        PlacementTable table = PlacementTable.standard(geo);
+        ArrayList<long[]> positions = positions(table, games);
+        System.out.println(positions.size()+" positions from "+games+" games on a "+geo.cols()+"x"+geo.rows()+" board");
+
+        ArrayList<MaskKernels> kernels = new ArrayList<>();
+        kernels.add(new ScalarKernels());
+        MaskKernels vector = MaskKernels.select("vector");
+        if(!(vector instanceof ScalarKernels))
+            kernels.add(vector);
+
+        BitBoard board = new BitBoard(table);
+        long expected = -1;
+        for(int round=0; round<rounds; round++)
+        {
+            boolean report = round == rounds - 1;
+            for(MaskKernels k: kernels)
+            {
+                long start = System.nanoTime();
+                long found = legalPlacements(k, board, positions);
+                long legalTime = System.nanoTime() - start;
+                start = System.nanoTime();
+                long applied = applyFirst(k, board, positions);
+                long applyTime = System.nanoTime() - start;
+                if(expected < 0)
+                    expected = found;
+                else if(found != expected)
+                    throw new IllegalStateException(k.getClass().getName()+" found "+found+" placements, expected "+expected);
+                if(report)
+                    System.out.printf("%-15s legal placements %8.1f ns/position   apply %6.1f ns/placement   (%d found)%n",
+                            k.getClass().getName(), (double)legalTime / positions.size(), (double)applyTime / Math.max(1, applied), found);
+            }
+            long start = System.nanoTime();
+            long found = shiftGenerator(board, positions);
+            long time = System.nanoTime() - start;
+            if(found != expected)
+                throw new IllegalStateException("BitBoard.legalMoves found "+found+" placements, expected "+expected);
+            if(report)
+                System.out.printf("%-15s legal placements %8.1f ns/position%n", "BitBoard shifts", (double)time / positions.size());
+        }
+    }
+
+    /**
+     * Plays random games and returns the state of every position in them
+     */
+    private static ArrayList<long[]> positions(PlacementTable table, int games)
+    {
+        ArrayList<long[]> positions = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(1);
+        BitBoard board = new BitBoard(table);
+        MoveList moves = new MoveList();
+        for(int g=0; g<games; g++)
+        {
+            board.clear();
+            int passes = 0;
+            while(passes < board.geometry().players())
+            {
+                positions.add(board.state().clone());
+                moves.clear();
+                board.legalMoves(moves);
+                if(moves.isEmpty())
+                {
+                    board.skip(board.turn());
+                    passes++;
+                }
+                else
+                {
+                    board.play(moves.get(random.nextInt(moves.size())));
+                    passes = 0;
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Finds the legal placements of every remaining piece of the player to move with the kernels
+     */
+    private static long legalPlacements(MaskKernels kernels, BitBoard board, ArrayList<long[]> positions)
+    {
+        PlacementTable table = board.placements();
+        int words = board.geometry().words();
+        MoveList out = new MoveList();
+        long found = 0;
+        for(long[] position: positions)
+        {
+            board.restore(position);
+            int player = board.turn();
+            long available = board.available(player);
+            for(int k=0; k<table.pieces(); k++)
+                if((available & (1L << k)) != 0)
+                {
+                    out.clear();
+                    found += kernels.legalPlacements(table.footprints(), table.firstId(k), table.endId(k), board.state(),
+                            board.forbiddenAt(player), board.anchorsAt(player), words, out);
+                }
+        }
+        return found;
+    }
+
+    /**
+     * Puts down the first placement of every position with the kernels
+     */
+    private static long applyFirst(MaskKernels kernels, BitBoard board, ArrayList<long[]> positions)
+    {
+        int words = board.geometry().words();
+        int players = board.geometry().players();
+        long[][] masks = board.placements().masks();
+        long applied = 0;
+        for(long[] position: positions)
+        {
+            board.restore(position);
+            long[] state = board.state();
+            int player = board.turn();
+            kernels.apply(state, board.cellsAt(player), board.occupiedAt(), board.forbiddenAt(0), board.anchorsAt(0),
+                    players, player, masks, 0, words);
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * Finds the legal placements of the player to move with the shift based generator
+     */
+    private static long shiftGenerator(BitBoard board, ArrayList<long[]> positions)
+    {
+        MoveList out = new MoveList();
+        long found = 0;
+        for(long[] position: positions)
+        {
+            board.restore(position);
+            out.clear();
+            board.legalMoves(out);
+            found += out.size();
+        }
+        return found;
+    }
+}
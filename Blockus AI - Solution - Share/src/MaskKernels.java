@@ -0,0 +1,85 @@
+/**
+ * The word by word mask operations the bitboard spends most of its time in.
+ * Masks are stored as several longs in a row (see Bits), and placement masks
+ * come from the arrays of a PlacementTable, placement id using words [id*words, (id+1)*words).
+ *
+ * ScalarKernels works on one long at a time and runs everywhere. VectorKernels
+ * (in the src-vector folder, built with the jdk.incubator.vector module) works on a
+ * whole mask per instruction. The kernels used by every board are picked once at
+ * startup with the blokus.kernels system property ("scalar", the default, or "vector").
+ */
+public interface MaskKernels
+{
+    // the kernels every board uses
+    MaskKernels SELECTED = select(System.getProperty("blokus.kernels", "scalar"));
+
+    /**
+     * Returns if a placement covers no forbidden cell and at least one anchor
+     * @param footprints - placement footprint masks
+     * @param off - offset of the placement's footprint
+     * @param state - array holding the player's masks
+     * @param forbidden - offset of the player's forbidden mask
+     * @param anchors - offset of the player's anchor mask
+     * @param words - number of longs per mask
+     * @return - true when the placement is legal
+     */
+    boolean isLegal(long[] footprints, int off, long[] state, int forbidden, int anchors, int words);
+
+    /**
+     * Adds every legal placement in a range of placement ids to a list
+     * @param footprints - placement footprint masks
+     * @param firstId - first placement id to test
+     * @param endId - one past the last placement id to test
+     * @param state - array holding the player's masks
+     * @param forbidden - offset of the player's forbidden mask
+     * @param anchors - offset of the player's anchor mask
+     * @param words - number of longs per mask
+     * @param out - list the legal placement ids are added to
+     * @return - the number of placements added
+     */
+    int legalPlacements(long[] footprints, int firstId, int endId, long[] state, int forbidden, int anchors, int words, MoveList out);
+
+    /**
+     * Puts a placement down for a player: its cells become the player's and occupied,
+     * every player may no longer cover them or use them as anchors, the cells touching
+     * its edges become forbidden for the player and the cells touching only its corners
+     * become the player's anchors unless they are forbidden.
+     * The forbidden and anchor masks of player p are at forbidden + p*words and anchors + p*words.
+     * @param state - array holding the masks
+     * @param cells - offset of the player's cell mask
+     * @param occupied - offset of the occupied mask
+     * @param forbidden - offset of player 0's forbidden mask
+     * @param anchors - offset of player 0's anchor mask
+     * @param players - number of players
+     * @param player - the player placing the piece
+     * @param masks - the table's footprint, edge and corner arrays, in that order
+     * @param off - offset of the placement's masks
+     * @param words - number of longs per mask
+     */
+    void apply(long[] state, int cells, int occupied, int forbidden, int anchors, int players, int player,
+               long[][] masks, int off, int words);
+
+    /**
+     * Returns the kernels with the provided name, falling back to the scalar kernels
+     * when the vector kernels are not on the classpath or the vector module is missing
+     * @param name - "scalar" or "vector"
+     * @return - the kernels
+     */
+    static MaskKernels select(String name)
+    {
+        if(name.equals("vector"))
+        {
+            try
+            {
+                return (MaskKernels)Class.forName("VectorKernels").getDeclaredConstructor().newInstance();
+            }
+            catch(ReflectiveOperationException | LinkageError e)
+            {
+                System.out.println("Vector kernels are not available ("+e+"), using scalar kernels");
+            }
+        }
+        else if(!name.equals("scalar"))
+            System.out.println("Unknown kernels \""+name+"\", using scalar kernels");
+        return new ScalarKernels();
+    }
+}
@@ -0,0 +1,268 @@
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * An AI that picks its move with Monte Carlo tree search.
+ *
+ * Each playout walks down a tree of moves from the current position, picking at every
+ * node the move with the best UCT score (the share of games won after it plus a bonus
+ * for moves tried less often), adds a node when it reaches the end of the tree, plays
+ * random moves to the end of the game and counts the result in every node it passed.
+ * When the time or the number of playouts for the move runs out it plays the move
+ * tried most often.
+ *
+ * Several threads can grow the same tree. A thread counts its visit in a node on the
+ * way down and only adds the result on the way back, so until then the visit looks like
+ * a loss (a virtual loss) and other threads are steered to other moves. The counts are
+ * updated with atomic adds and new children are published with a compare and set, so
+ * no thread ever waits for a lock. The helper threads come from SearchPool.
+ */
+public class MonteCarloAI extends Player
+{
+    // time used for a move when none is given, in milliseconds
+    public static final int DEFAULT_MILLIS = 1000;
+
+    // weight of the exploration bonus in the UCT score
+    private static final double EXPLORATION = 0.7;
+    // visits a node needs before its children are added
+    private static final int EXPAND_VISITS = 2;
+    // longest path from the root, in moves
+    private static final int MAX_PATH = 256;
+
+    // time for one move, in milliseconds
+    private final long millis;
+    // most playouts for one move, 0 for no limit
+    private final long maxPlayouts;
+    // number of threads growing the tree
+    private final int threads;
+    // the playout engine of each thread, created by its first playout and kept for later moves
+    private final RandomPlayout[] engines;
+    // the placements of the two player board
+    private final PlacementTable table = PlacementTable.standard(BoardGeometry.DUO);
+
+    // playouts made for the last move
+    private final AtomicLong playouts = new AtomicLong();
+    // when the search has to stop, from System.nanoTime
+    private long deadline;
+    // set when the time or playouts ran out
+    private volatile boolean stopped;
+    // the state of the position the move is searched for
+    private long[] rootState;
+
+    /**
+     * A position in the tree, reached by playing move from its parent's position
+     */
+    private static class Node
+    {
+        private static final AtomicIntegerFieldUpdater<Node> VISITS = AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+        private static final AtomicLongFieldUpdater<Node> POINTS = AtomicLongFieldUpdater.newUpdater(Node.class, "points");
+        private static final AtomicReferenceFieldUpdater<Node, Node[]> CHILDREN = AtomicReferenceFieldUpdater.newUpdater(Node.class, Node[].class, "children");
+
+        // the placement id played to reach the node, or BitBoard.PASS
+        final int move;
+        // the player who played move
+        final int player;
+        // playouts through the node, including ones still running
+        volatile int visits;
+        // 2 for each finished playout player won through the node, 1 for each tie
+        volatile long points;
+        // the positions one move on, null until they are added
+        volatile Node[] children;
+
+        Node(int move, int player)
+        {
+            this.move = move;
+            this.player = player;
+        }
+    }
+
+    /**
+     * Contructs the AI given a name and color, using DEFAULT_MILLIS and one thread for each move
+     * @param color - color the player is playing as
+     * @param name - name of the player
+     */
+    public MonteCarloAI(int color, String name)
+    {
+        this(color, name, DEFAULT_MILLIS, 0, 1);
+    }
+
+    /**
+     * Contructs the AI given a name, color, budget for each move and number of threads
+     * @param color - color the player is playing as
+     * @param name - name of the player
+     * @param millis - the time to search each move for, in milliseconds
+     * @param maxPlayouts - the most playouts for each move, 0 for no limit
+     * @param threads - the number of threads to search with, at least 1, see SearchPool for how many run at once
+     */
+    public MonteCarloAI(int color, String name, long millis, long maxPlayouts, int threads)
+    {
+        super(color, name);
+        if(threads < 1)
+            throw new IllegalArgumentException("at least one search thread is needed, got "+threads);
+        this.millis = millis;
+        this.maxPlayouts = maxPlayouts;
+        this.threads = threads;
+        this.engines = new RandomPlayout[Math.min(threads, SearchPool.size() + 1)];
+    }
+
+    /**
+     * Returns the move tried most often in the time or playouts for a move
+     * @param board - the board that a move should be made on
+     * @return - a valid move, null when there is none or it is not this player's turn
+     */
+    @Override
+    public Move getMove(BlokusBoard board)
+    {
+        deadline = System.nanoTime() + millis * 1000000L;
+        stopped = false;
+        playouts.set(0);
+        BitBoard bits = new BitBoard(table);
+        PositionCodec.fromBytes(bits, board.toBytes());
+        int player = (getColor() == BlokusBoard.ORANGE) ? 0 : 1;
+        if(bits.turn() != player)
+            return null;
+        MoveList moves = new MoveList();
+        bits.legalMoves(player, bits.available(player), moves);
+        if(moves.isEmpty())
+            return null;
+        if(moves.size() == 1)
+            return board.toMove(table.packed(moves.get(0)));
+
+        rootState = bits.state().clone();
+        Node root = new Node(BitBoard.PASS, -1);
+        root.children = children(moves, player);
+        SearchPool.run(engines.length, i -> grow(root, i));
+
+        Node best = root.children[0];
+        for(Node child: root.children)
+            if(child.visits > best.visits)
+                best = child;
+        return board.toMove(table.packed(best.move));
+    }
+
+    /**
+     * Returns the number of playouts made for the last move
+     * @return - number of playouts
+     */
+    public long playouts()
+    {
+        return playouts.get();
+    }
+
+    /**
+     * Makes playouts from the root until the time or the playouts run out
+     * @param root - the root of the tree
+     * @param thread - the number of the thread, see SearchPool.run
+     */
+    private void grow(Node root, int thread)
+    {
+        if(engines[thread] == null)
+            engines[thread] = new RandomPlayout(table, System.nanoTime() + thread);
+        RandomPlayout playout = engines[thread];
+        playout.setRoot(rootState);
+        BitBoard bits = playout.board();
+        MoveList moves = new MoveList();
+        Node[] path = new Node[MAX_PATH];
+        while(!stopped)
+        {
+            long made = playouts.incrementAndGet();
+            if((maxPlayouts > 0 && made > maxPlayouts) || System.nanoTime() > deadline)
+            {
+                playouts.decrementAndGet();
+                stopped = true;
+                break;
+            }
+            bits.restore(rootState);
+
+            // walk down the tree, counting a visit in every node passed
+            int length = 0;
+            Node node = root;
+            Node.VISITS.incrementAndGet(root);
+            path[length++] = root;
+            while(node.children != null && length < MAX_PATH)
+            {
+                node = select(node);
+                Node.VISITS.incrementAndGet(node);
+                path[length++] = node;
+                play(bits, node.move);
+            }
+
+            // add the children of the node reached once it has been visited enough
+            if(!bits.isGameOver() && node.visits >= EXPAND_VISITS && length < MAX_PATH)
+            {
+                int player = bits.turn();
+                moves.clear();
+                bits.legalMoves(player, bits.available(player), moves);
+                Node.CHILDREN.compareAndSet(node, null, children(moves, player));
+                node = select(node);
+                Node.VISITS.incrementAndGet(node);
+                path[length++] = node;
+                play(bits, node.move);
+            }
+
+            long leaders = playout.play();
+            for(int i=0; i<length; i++)
+            {
+                Node n = path[i];
+                if(n.player >= 0 && (leaders & (1L << n.player)) != 0)
+                    Node.POINTS.addAndGet(n, (Long.bitCount(leaders) == 1) ? 2 : 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the child with the best UCT score. Children never visited come first.
+     */
+    private static Node select(Node node)
+    {
+        Node[] children = node.children;
+        double logVisits = Math.log(Math.max(1, node.visits));
+        Node best = children[0];
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for(Node child: children)
+        {
+            int visits = child.visits;
+            if(visits == 0)
+                return child;
+            double score = child.points / (2.0 * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+            if(score > bestScore)
+            {
+                bestScore = score;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Creates a child for every move of a player, or a single pass when there are none
+     */
+    private static Node[] children(MoveList moves, int player)
+    {
+        if(moves.isEmpty())
+            return new Node[]{new Node(BitBoard.PASS, player)};
+        Node[] children = new Node[moves.size()];
+        for(int i=0; i<children.length; i++)
+            children[i] = new Node(moves.get(i), player);
+        return children;
+    }
+
+    /**
+     * Plays a placement or a pass for the player to move
+     */
+    private static void play(BitBoard bits, int move)
+    {
+        if(move == BitBoard.PASS)
+            bits.skip(bits.turn());
+        else
+            bits.play(move);
+    }
+
+    @Override
+    public Player freshCopy()
+    {
+        return new MonteCarloAI(getColor(), getName(), millis, maxPlayouts, threads);
+    }
+}
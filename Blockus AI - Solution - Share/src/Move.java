@@ -1,10 +1,15 @@
 import java.io.Serializable;
 
 /**
- * Store data for a game move
+ * Store data for a game move.
+ * A move can also be packed into one int (see pack) so move generators, searches and
+ * the network messages can pass moves around without creating Move and IntPoint objects.
  */
 public class Move implements Serializable
 {
+    // a packed move that is never valid, used for moves whose data does not fit in a packed move
+    public static final int UNPLAYABLE = 0xFFFF;
+
     // stores if the piece needs to be flipped (true - yes / false no)
     private boolean flip;
     // stores how many times the piece needs to be rotated
@@ -28,6 +33,16 @@ public class Move implements Serializable
         this.point=point;
     }
 
+    /**
+     * Creates a move using a form index instead of a flip/rotation pair
+     * @param pieceNumber - which piece is being placed
+     * @param form - the form of the piece, see Shape.orientation
+     * @param point - position on the board that it will be placed
+     */
+    public Move(int pieceNumber, int form, IntPoint point) {
+        this(pieceNumber, Shape.isFlipped(form), Shape.rotation(form), point);
+    }
+
     /**
      * Returns where the piece is the to be placed
      * @return - the top left corner for the piece placement
@@ -60,6 +75,83 @@ public class Move implements Serializable
         return rotation;
     }
 
+    /**
+     * Packs a move into an int. Bits 0-7 hold the column, bits 8-15 the row,
+     * bits 16-18 the form and the bits above the piece number.
+     * @param pieceNumber - which piece is being placed (0-255)
+     * @param form - the form of the piece (0-7), see Shape.formIndex
+     * @param x - column of the top left corner (0-255)
+     * @param y - row of the top left corner (0-255)
+     * @return - the packed move, UNPLAYABLE if a value is out of range
+     */
+    public static int pack(int pieceNumber, int form, int x, int y)
+    {
+        if((pieceNumber & ~0xFF) != 0 || (form & ~7) != 0 || (x & ~0xFF) != 0 || (y & ~0xFF) != 0)
+            return UNPLAYABLE;
+        return (pieceNumber << 19) | (form << 16) | (y << 8) | x;
+    }
+
+    /**
+     * Returns the piece number of a packed move
+     * @param packed - packed move
+     * @return - the index of the piece
+     */
+    public static int pieceNumber(int packed)
+    {
+        return packed >>> 19;
+    }
+
+    /**
+     * Returns the form of a packed move
+     * @param packed - packed move
+     * @return - the form index (0-7), see Shape.formIndex
+     */
+    public static int form(int packed)
+    {
+        return (packed >>> 16) & 7;
+    }
+
+    /**
+     * Returns the column of a packed move
+     * @param packed - packed move
+     * @return - column of the top left corner
+     */
+    public static int x(int packed)
+    {
+        return packed & 0xFF;
+    }
+
+    /**
+     * Returns the row of a packed move
+     * @param packed - packed move
+     * @return - row of the top left corner
+     */
+    public static int y(int packed)
+    {
+        return (packed >>> 8) & 0xFF;
+    }
+
+    /**
+     * Turns a packed move into a Move
+     * @param packed - packed move
+     * @return - the move
+     */
+    public static Move fromPacked(int packed)
+    {
+        return new Move(pieceNumber(packed), form(packed), new IntPoint(x(packed), y(packed)));
+    }
+
+    /**
+     * Returns this move packed into an int
+     * @return - the packed move, UNPLAYABLE if the move can not be packed
+     */
+    public int toPacked()
+    {
+        if(point == null)
+            return UNPLAYABLE;
+        return pack(pieceNumber, Shape.formIndex(flip, rotation), point.getX(), point.getY());
+    }
+
     /**
      * Returns a text version of the move
      * (location/flipped/roations/piece index)
@@ -0,0 +1,95 @@
+import java.util.Arrays;
+
+/**
+ * A growable list of moves stored as ints, meant to be cleared and reused
+ * so generating moves does not allocate objects.
+ */
+public class MoveList
+{
+    // stores the moves
+    private int[] moves;
+    // stores how many moves are in the list
+    private int size = 0;
+
+    /**
+     * Creates an empty list
+     */
+    public MoveList()
+    {
+        this(256);
+    }
+
+    /**
+     * Creates an empty list with room for the provided number of moves
+     * @param capacity - starting capacity
+     */
+    public MoveList(int capacity)
+    {
+        moves = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Removes every move, keeping the storage
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * Adds a move to the end of the list
+     * @param move - the move to add
+     */
+    public void add(int move)
+    {
+        if(size == moves.length)
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        moves[size++] = move;
+    }
+
+    /**
+     * Removes the last move of the list
+     */
+    public void removeLast()
+    {
+        size--;
+    }
+
+    /**
+     * Returns a move
+     * @param i - index in the list
+     * @return - the move at that index
+     */
+    public int get(int i)
+    {
+        return moves[i];
+    }
+
+    /**
+     * Replaces a move
+     * @param i - index in the list
+     * @param move - the new move
+     */
+    public void set(int i, int move)
+    {
+        moves[i] = move;
+    }
+
+    /**
+     * Returns the number of moves in the list
+     * @return - number of moves
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns if the list has no moves
+     * @return - true when the list is empty
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+}
@@ -0,0 +1,236 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The set of pieces used by the game, loaded once from the shapes.txt resource on the
+ * classpath. Every shape in the file is a block of lines of '*' (square) and '-' (empty),
+ * with the blocks separated by blank lines.
+ *
+ * The catalog never changes after it is built, so it can be shared by every board and
+ * thread. It holds each piece's distinct orientations, cell count and the bounding box
+ * of each form so the rest of the game does not have to work them out again.
+ * Loading fails with an exception when the resource is missing or malformed instead of
+ * giving a game with no pieces.
+ */
+public final class PieceCatalog
+{
+    // name of the resource the standard pieces are loaded from
+    public static final String RESOURCE = "/shapes.txt";
+
+    // the pieces in piece number order
+    private final List<Shape> shapes;
+    // the distinct orientations (form indexes) of each piece
+    private final int[][] orientations;
+    // the number of squares in each piece
+    private final int[] cellCounts;
+    // the width and height of every piece/form, piece/form pf is piece * Shape.FORMS + form
+    private final int[] widths;
+    private final int[] heights;
+
+    /**
+     * Holds the standard catalog. The class is only loaded the first time it is needed,
+     * and the JVM makes sure that happens once even when several threads ask at the same time.
+     */
+    private static class Standard
+    {
+        static final PieceCatalog CATALOG = load(RESOURCE);
+    }
+
+    /**
+     * Creates a catalog holding the provided shapes
+     * @param shapes - the shapes, in piece number order
+     */
+    public PieceCatalog(List<Shape> shapes)
+    {
+        if(shapes.isEmpty())
+            throw new IllegalArgumentException("a piece catalog needs at least one shape");
+        if(shapes.size() > 64)
+            throw new IllegalArgumentException("at most 64 pieces are supported, got "+shapes.size());
+
+        this.shapes = Collections.unmodifiableList(new ArrayList<>(shapes));
+        orientations = new int[shapes.size()][];
+        cellCounts = new int[shapes.size()];
+        widths = new int[shapes.size() * Shape.FORMS];
+        heights = new int[shapes.size() * Shape.FORMS];
+        for(int k=0; k<shapes.size(); k++)
+        {
+            Shape shape = shapes.get(k);
+            cellCounts[k] = shape.cellCount();
+            orientations[k] = new int[shape.orientationCount()];
+            for(int i=0; i<orientations[k].length; i++)
+                orientations[k][i] = shape.orientation(i);
+            for(int f=0; f<Shape.FORMS; f++)
+            {
+                heights[k * Shape.FORMS + f] = shape.form(f).length;
+                widths[k * Shape.FORMS + f] = shape.form(f)[0].length;
+            }
+        }
+    }
+
+    /**
+     * Returns the catalog of the standard pieces, loading it the first time
+     * @return - the standard catalog
+     */
+    public static PieceCatalog standard()
+    {
+        return Standard.CATALOG;
+    }
+
+    /**
+     * Loads a catalog from a resource on the classpath
+     * @param resource - the name of the resource, see Class.getResourceAsStream
+     * @return - the catalog
+     * @throws IllegalStateException - when the resource is missing, can not be read or is malformed
+     */
+    public static PieceCatalog load(String resource)
+    {
+        InputStream in = PieceCatalog.class.getResourceAsStream(resource);
+        if(in == null)
+            throw new IllegalStateException("piece resource "+resource+" was not found on the classpath");
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)))
+        {
+            return parse(reader, resource);
+        }
+        catch(IOException e)
+        {
+            throw new IllegalStateException("could not read piece resource "+resource, e);
+        }
+    }
+
+    /**
+     * Reads the shapes from the text of a piece file
+     * @param reader - the text
+     * @param name - name of the source, used in error messages
+     * @return - the catalog
+     * @throws IOException - when the text can not be read
+     */
+    private static PieceCatalog parse(BufferedReader reader, String name) throws IOException
+    {
+        ArrayList<Shape> shapes = new ArrayList<>();
+        ArrayList<String> lines = new ArrayList<>();
+        int lineNumber = 0;
+        String line;
+        do
+        {
+            line = reader.readLine();
+            lineNumber++;
+            if(line == null || line.isEmpty())
+            {
+                if(!lines.isEmpty())
+                {
+                    shapes.add(toShape(lines, name, lineNumber));
+                    lines.clear();
+                }
+            }
+            else
+            {
+                if(!lines.isEmpty() && line.length() != lines.get(0).length())
+                    throw new IllegalStateException(name+" line "+lineNumber+": rows of a shape must have the same length");
+                for(int c=0; c<line.length(); c++)
+                    if(line.charAt(c) != '*' && line.charAt(c) != '-')
+                        throw new IllegalStateException(name+" line "+lineNumber+": unexpected character '"+line.charAt(c)+"'");
+                lines.add(line);
+            }
+        }
+        while(line != null);
+
+        if(shapes.isEmpty())
+            throw new IllegalStateException(name+" holds no shapes");
+        return new PieceCatalog(shapes);
+    }
+
+    /**
+     * Turns the rows of one shape into a Shape
+     */
+    private static Shape toShape(ArrayList<String> lines, String name, int lineNumber)
+    {
+        boolean[][] data = new boolean[lines.size()][lines.get(0).length()];
+        boolean any = false;
+        for(int r=0; r<data.length; r++)
+            for(int c=0; c<data[0].length; c++)
+            {
+                data[r][c] = lines.get(r).charAt(c)=='*';
+                any |= data[r][c];
+            }
+        if(!any)
+            throw new IllegalStateException(name+" line "+lineNumber+": shape has no squares");
+        return new Shape(data);
+    }
+
+    /**
+     * Returns the number of pieces
+     * @return - number of pieces
+     */
+    public int size()
+    {
+        return shapes.size();
+    }
+
+    /**
+     * Returns every piece, in piece number order. The list can not be changed.
+     * @return - the shapes
+     */
+    public List<Shape> shapes()
+    {
+        return shapes;
+    }
+
+    /**
+     * Returns a piece
+     * @param piece - the index of the piece
+     * @return - the shape of the piece
+     */
+    public Shape shape(int piece)
+    {
+        return shapes.get(piece);
+    }
+
+    /**
+     * Returns the distinct orientations of a piece.
+     * The array must not be modified.
+     * @param piece - the index of the piece
+     * @return - the form index of every distinct orientation
+     */
+    public int[] orientations(int piece)
+    {
+        return orientations[piece];
+    }
+
+    /**
+     * Returns the number of squares in a piece
+     * @param piece - the index of the piece
+     * @return - number of squares
+     */
+    public int cellCount(int piece)
+    {
+        return cellCounts[piece];
+    }
+
+    /**
+     * Returns the width of the bounding box of a piece's form
+     * @param piece - the index of the piece
+     * @param form - form index (see Shape.formIndex)
+     * @return - number of columns the form spans
+     */
+    public int width(int piece, int form)
+    {
+        return widths[piece * Shape.FORMS + form];
+    }
+
+    /**
+     * Returns the height of the bounding box of a piece's form
+     * @param piece - the index of the piece
+     * @param form - form index (see Shape.formIndex)
+     * @return - number of rows the form spans
+     */
+    public int height(int piece, int form)
+    {
+        return heights[piece * Shape.FORMS + form];
+    }
+}
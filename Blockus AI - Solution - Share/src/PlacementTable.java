@@ -0,0 +1,505 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of every way a piece can be put on the board. Each distinct placement
+ * (piece, canonical form and top left cell) that fits on the board gets an id.
+ * Forms that look like an earlier form of the same piece share that form's ids. The
+ * table stores three masks for it:
+ * the cells it covers (footprint), the cells touching its corners but not its
+ * edges (corners) and the cells touching its edges (edges).
+ * With these masks checking a placement is a few mask tests.
+ *
+ * For every canonical form the table also stores the bit offsets of its cells
+ * from its top left corner and the mask of top left cells it fits at, which
+ * lets a move generator test a form at every top left cell at once with shifts.
+ */
+public class PlacementTable
+{
+    // the layout of the board
+    private final BoardGeometry geo;
+    // number of longs per mask
+    private final int words;
+    // number of pieces
+    private final int pieces;
+    // number of bits in a mask that can hold a cell (rows * stride)
+    private final int bits;
+
+    // placement id for every piece/form/top left cell, -1 when the form does not fit there.
+    // Non canonical forms hold the id of their canonical form.
+    private final int[] ids;
+
+    // the canonical forms of each piece
+    private final int[][] pieceForms;
+    // the pieces ordered from most to fewest cells, ties in piece order
+    private final int[] piecesBySize;
+    // the number of cells in each piece
+    private final int[] pieceSizes;
+    // bit offsets of the cells of each canonical piece/form from its top left corner, null for other forms
+    private final int[][] formCells;
+    // mask of the top left cells each piece/form fits at, piece/form pf uses words [pf*words, (pf+1)*words)
+    private final long[] formOrigins;
+
+    // data for each placement id
+    private final int[] piece;
+    private final int[] form;
+    private final int[] origin;
+    private final int[] cellCount;
+    // the packed move (see Move.pack) of each placement
+    private final int[] packed;
+    // the placement each placement becomes when the board is transposed, null when the board is not symmetric
+    private final int[] transposed;
+
+    // masks for each placement, placement id uses words [id*words, (id+1)*words)
+    private final long[] footprints;
+    private final long[] corners;
+    private final long[] edges;
+    // the footprint, edge and corner arrays together, for MaskKernels.apply
+    private final long[][] masks;
+    // the placement ids of piece k are [firstIds[k], firstIds[k+1])
+    private final int[] firstIds;
+
+    // hash keys for positions on this board
+    private final Zobrist zobrist;
+
+    // the tables of the standard pieces, built once for each board they are asked for
+    private static final ConcurrentHashMap<BoardGeometry, PlacementTable> standard = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the table of the standard pieces (see PieceCatalog.standard) for a board,
+     * building it the first time. Every caller gets the same table, which never changes,
+     * so boards of any number of games and threads can share it.
+     * @param geo - the layout of the board
+     * @return - the placements of the standard pieces on the board
+     */
+    public static PlacementTable standard(BoardGeometry geo)
+    {
+        return standard.computeIfAbsent(geo, g -> new PlacementTable(g, PieceCatalog.standard()));
+    }
+
+    /**
+     * Builds the table for the provided board and pieces
+     * @param geo - the layout of the board
+     * @param catalog - the pieces, whose orientations, sizes and bounding boxes are used as they are
+     */
+    public PlacementTable(BoardGeometry geo, PieceCatalog catalog)
+    {
+        this.geo = geo;
+        this.words = geo.words();
+        this.pieces = catalog.size();
+        this.bits = geo.rows() * geo.stride();
+
+        ids = new int[pieces * Shape.FORMS * bits];
+        Arrays.fill(ids, -1);
+        int count = 0;
+        firstIds = new int[pieces + 1];
+        for(int k=0; k<pieces; k++)
+        {
+            firstIds[k] = count;
+            for(int f=0; f<Shape.FORMS; f++)
+            {
+                int canonical = catalog.shape(k).canonicalForm(f);
+                for(int y=0; y<geo.rows(); y++)
+                    for(int x=0; x<geo.cols(); x++)
+                    {
+                        boolean fits = y + catalog.height(k, f) <= geo.rows() && x + catalog.width(k, f) <= geo.cols();
+                        if(!fits)
+                            continue;
+                        else if(canonical != f)
+                            ids[lookupIndex(k, f, x, y)] = ids[lookupIndex(k, canonical, x, y)];
+                        else
+                            ids[lookupIndex(k, f, x, y)] = count++;
+                    }
+            }
+        }
+
+        firstIds[pieces] = count;
+        piece = new int[count];
+        form = new int[count];
+        origin = new int[count];
+        cellCount = new int[count];
+        packed = new int[count];
+        footprints = new long[count * words];
+        corners = new long[count * words];
+        edges = new long[count * words];
+        masks = new long[][]{footprints, edges, corners};
+        pieceForms = new int[pieces][];
+        formCells = new int[pieces * Shape.FORMS][];
+        formOrigins = new long[pieces * Shape.FORMS * words];
+
+        long[] around = new long[words];
+        for(int k=0; k<pieces; k++)
+        {
+            pieceForms[k] = catalog.orientations(k);
+            for(int f: pieceForms[k])
+            {
+                boolean[][] shape = catalog.shape(k).form(f);
+                int pf = k * Shape.FORMS + f;
+                int n = 0;
+                formCells[pf] = new int[catalog.cellCount(k)];
+                for(int r=0; r<shape.length; r++)
+                    for(int c=0; c<shape[0].length; c++)
+                        if(shape[r][c])
+                            formCells[pf][n++] = r * geo.stride() + c;
+
+                for(int y=0; y<geo.rows(); y++)
+                    for(int x=0; x<geo.cols(); x++)
+                    {
+                        int id = ids[lookupIndex(k, f, x, y)];
+                        if(id < 0)
+                            continue;
+                        piece[id] = k;
+                        form[id] = f;
+                        origin[id] = geo.index(x, y);
+                        packed[id] = Move.pack(k, f, x, y);
+                        Bits.set(formOrigins, pf * words, origin[id]);
+                        int off = id * words;
+                        for(int r=0; r<shape.length; r++)
+                            for(int c=0; c<shape[0].length; c++)
+                                if(shape[r][c])
+                                {
+                                    Bits.set(footprints, off, geo.index(x + c, y + r));
+                                    cellCount[id]++;
+                                }
+
+                        geo.orthogonal(footprints, off, edges, off);
+                        geo.diagonal(footprints, off, around, 0);
+                        for(int w=0; w<words; w++)
+                        {
+                            edges[off + w] &= ~footprints[off + w];
+                            corners[off + w] = around[w] & ~footprints[off + w] & ~edges[off + w];
+                        }
+                    }
+            }
+        }
+        pieceSizes = new int[pieces];
+        for(int k=0; k<pieces; k++)
+            pieceSizes[k] = catalog.cellCount(k);
+        int largest = 0;
+        for(int size: pieceSizes)
+            largest = Math.max(largest, size);
+        piecesBySize = new int[pieces];
+        int n = 0;
+        for(int size=largest; size>0; size--)
+            for(int k=0; k<pieces; k++)
+                if(pieceSizes[k] == size)
+                    piecesBySize[n++] = k;
+
+        transposed = geo.isTransposeSymmetric() ? transposePlacements() : null;
+        zobrist = new Zobrist(this);
+    }
+
+    /**
+     * Finds, for every placement, the placement covering the same cells with rows and columns swapped
+     */
+    private int[] transposePlacements()
+    {
+        int[] result = new int[size()];
+        long[] mirror = new long[words];
+        for(int id=0; id<size(); id++)
+        {
+            Bits.clear(mirror, 0, words);
+            int top = geo.rows();
+            int left = geo.cols();
+            for(int i = Bits.nextSetBit(footprints, id * words, words, 0); i >= 0; i = Bits.nextSetBit(footprints, id * words, words, i + 1))
+            {
+                int t = geo.transpose(i);
+                Bits.set(mirror, 0, t);
+                top = Math.min(top, geo.row(t));
+                left = Math.min(left, geo.col(t));
+            }
+            result[id] = -1;
+            for(int f: pieceForms[piece[id]])
+            {
+                int candidate = id(piece[id], f, geo.index(left, top));
+                if(candidate >= 0 && Arrays.equals(footprints, candidate * words, (candidate + 1) * words, mirror, 0, words))
+                    result[id] = candidate;
+            }
+            if(result[id] < 0)
+                throw new IllegalStateException("no transposed placement for placement "+id);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position of a placement in the id lookup array
+     */
+    private int lookupIndex(int piece, int form, int x, int y)
+    {
+        return (piece * Shape.FORMS + form) * bits + geo.index(x, y);
+    }
+
+    /**
+     * Returns the id of a placement given the bit index of its top left corner
+     * @param piece - the index of the piece
+     * @param form - form index (see Shape.formIndex)
+     * @param origin - bit index of the top left corner
+     * @return - the placement id, -1 when the form does not fit there
+     */
+    public int id(int piece, int form, int origin)
+    {
+        return ids[(piece * Shape.FORMS + form) * bits + origin];
+    }
+
+    /**
+     * Returns the canonical forms of a piece.
+     * The array must not be modified.
+     * @param piece - the index of the piece
+     * @return - the form index of every distinct orientation of the piece
+     */
+    public int[] forms(int piece)
+    {
+        return pieceForms[piece];
+    }
+
+    /**
+     * Returns the pieces ordered from the most cells to the fewest.
+     * The array must not be modified.
+     * @return - piece indexes, largest pieces first
+     */
+    public int[] piecesBySize()
+    {
+        return piecesBySize;
+    }
+
+    /**
+     * Returns the number of cells in a piece
+     * @param piece - the index of the piece
+     * @return - the size of the piece
+     */
+    public int pieceSize(int piece)
+    {
+        return pieceSizes[piece];
+    }
+
+    /**
+     * Returns the bit offsets of the cells of a canonical form from its top left corner.
+     * The array must not be modified.
+     * @param piece - the index of the piece
+     * @param form - a canonical form index of the piece
+     * @return - offset of every cell of the form
+     */
+    public int[] formCells(int piece, int form)
+    {
+        return formCells[piece * Shape.FORMS + form];
+    }
+
+    /**
+     * Returns the masks of top left cells each piece/form fits at.
+     * Piece/form pf (piece * Shape.FORMS + form) uses words [pf*words, (pf+1)*words).
+     * The array must not be modified.
+     * @return - the origin masks
+     */
+    public long[] formOrigins()
+    {
+        return formOrigins;
+    }
+
+    /**
+     * Returns the id of a placement
+     * @param piece - the index of the piece
+     * @param flip - if the piece is flipped
+     * @param rotation - number of times the piece is rotated
+     * @param x - column of the top left corner of the piece
+     * @param y - row of the top left corner of the piece
+     * @return - the placement id, -1 when the piece does not fit on the board there
+     */
+    public int find(int piece, boolean flip, int rotation, int x, int y)
+    {
+        int f = Shape.formIndex(flip, rotation);
+        if(piece < 0 || piece >= pieces || f < 0 || f >= Shape.FORMS || !geo.isInGrid(x, y))
+            return -1;
+        return ids[lookupIndex(piece, f, x, y)];
+    }
+
+    /**
+     * Returns the id of the placement a move describes
+     * @param move - the move
+     * @return - the placement id, -1 when the piece does not fit on the board there
+     */
+    public int find(Move move)
+    {
+        return find(move.getPieceNumber(), move.isFlip(), move.getRotation(), move.getPoint().getX(), move.getPoint().getY());
+    }
+
+    /**
+     * Returns the id of the placement a packed move describes
+     * @param move - packed move, see Move.pack
+     * @return - the placement id, -1 when the piece does not fit on the board there
+     */
+    public int idOfPacked(int move)
+    {
+        int piece = Move.pieceNumber(move);
+        int x = Move.x(move);
+        int y = Move.y(move);
+        if(piece >= pieces || !geo.isInGrid(x, y))
+            return -1;
+        return ids[lookupIndex(piece, Move.form(move), x, y)];
+    }
+
+    /**
+     * Returns a placement as a packed move using the placement's canonical form
+     * @param id - placement id
+     * @return - the packed move, see Move.pack
+     */
+    public int packed(int id)
+    {
+        return packed[id];
+    }
+
+    /**
+     * Returns the placement covering a placement's cells reflected across the main diagonal
+     * @param id - placement id
+     * @return - the transposed placement id, -1 when the board is not symmetric
+     */
+    public int transposed(int id)
+    {
+        return (transposed == null) ? -1 : transposed[id];
+    }
+
+    /**
+     * Returns the hash keys for positions on this board
+     * @return - the zobrist keys
+     */
+    public Zobrist zobrist()
+    {
+        return zobrist;
+    }
+
+    /**
+     * Returns the layout of the board the table was built for
+     * @return - the board geometry
+     */
+    public BoardGeometry geometry()
+    {
+        return geo;
+    }
+
+    /**
+     * Returns the number of placements in the table
+     * @return - number of placement ids
+     */
+    public int size()
+    {
+        return piece.length;
+    }
+
+    /**
+     * Returns the number of pieces in the table
+     * @return - number of pieces
+     */
+    public int pieces()
+    {
+        return pieces;
+    }
+
+    /**
+     * Returns the piece a placement puts down
+     * @param id - placement id
+     * @return - the index of the piece
+     */
+    public int piece(int id)
+    {
+        return piece[id];
+    }
+
+    /**
+     * Returns the canonical form a placement uses
+     * @param id - placement id
+     * @return - the form index of the piece (see Shape.formIndex)
+     */
+    public int form(int id)
+    {
+        return form[id];
+    }
+
+    /**
+     * Returns the bit index of a placement's top left corner
+     * @param id - placement id
+     * @return - bit index of the top left corner
+     */
+    public int origin(int id)
+    {
+        return origin[id];
+    }
+
+    /**
+     * Returns the number of cells a placement covers
+     * @param id - placement id
+     * @return - the size of the piece
+     */
+    public int cellCount(int id)
+    {
+        return cellCount[id];
+    }
+
+    /**
+     * Returns the footprint masks, placement id uses words [id*words, (id+1)*words).
+     * The array must not be modified.
+     * @return - the cells covered by every placement
+     */
+    public long[] footprints()
+    {
+        return footprints;
+    }
+
+    /**
+     * Returns the corner masks, placement id uses words [id*words, (id+1)*words).
+     * The array must not be modified.
+     * @return - the cells touching only a corner of every placement
+     */
+    public long[] corners()
+    {
+        return corners;
+    }
+
+    /**
+     * Returns the edge masks, placement id uses words [id*words, (id+1)*words).
+     * The array must not be modified.
+     * @return - the cells touching an edge of every placement
+     */
+    public long[] edges()
+    {
+        return edges;
+    }
+
+    /**
+     * Returns the footprint, edge and corner arrays, in that order.
+     * The arrays must not be modified.
+     * @return - the placement masks
+     */
+    public long[][] masks()
+    {
+        return masks;
+    }
+
+    /**
+     * Returns the first placement id of a piece. The ids of a piece are consecutive.
+     * @param piece - the index of the piece
+     * @return - the smallest placement id of the piece
+     */
+    public int firstId(int piece)
+    {
+        return firstIds[piece];
+    }
+
+    /**
+     * Returns one past the last placement id of a piece
+     * @param piece - the index of the piece
+     * @return - the smallest placement id after the piece's ids
+     */
+    public int endId(int piece)
+    {
+        return firstIds[piece + 1];
+    }
+
+    /**
+     * Turns a placement back into a move
+     * @param id - placement id
+     * @return - a move that places the same cells
+     */
+    public Move toMove(int id)
+    {
+        return new Move(piece[id], form[id], new IntPoint(geo.col(origin[id]), geo.row(origin[id])));
+    }
+}
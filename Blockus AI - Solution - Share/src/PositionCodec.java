@@ -0,0 +1,283 @@
+/**
+ * Reads and writes game positions (the pieces on the board, the pieces each player
+ * has used, the player to move and the skip flags) in two forms:
+ *
+ * Binary: a fixed number of bytes for a given board. Byte 0 holds the player to move,
+ * byte 1 the skip flags (bit p for player p), then each player's used pieces as a
+ * little endian bit mask of (pieces + 7) / 8 bytes, then the cells row by row packed
+ * lowest bit first, with just enough bits per cell to hold 0 for empty or player + 1.
+ * A two player 14x14 position takes 57 bytes.
+ *
+ * Text: four fields separated by spaces, for example "14/14/4a9/... a - 1,0".
+ * The first lists the rows from the top separated by '/', each row written as runs of
+ * empty cells (a number) and player cells (a letter, 'a' for player 0, 'b' for player 1
+ * and so on). The second is the letter of the player to move, the third the letters of
+ * the players that skipped their last turn ('-' for none) and the last each player's
+ * used pieces as a hexadecimal bit mask, separated by commas.
+ *
+ * Both readers reject malformed input with an IllegalArgumentException.
+ */
+public class PositionCodec
+{
+    /**
+     * Returns the number of bytes the binary form of a position takes
+     * @param table - the placements of the pieces on the board
+     * @return - the size of every binary position for the board
+     */
+    public static int binarySize(PlacementTable table)
+    {
+        BoardGeometry geo = table.geometry();
+        return 2 + geo.players() * usedBytes(table) + (geo.rows() * geo.cols() * bitsPerCell(geo) + 7) / 8;
+    }
+
+    /**
+     * Returns the binary form of a position
+     * @param board - the position
+     * @return - binarySize bytes holding the position
+     */
+    public static byte[] toBytes(BitBoard board)
+    {
+        PlacementTable table = board.placements();
+        BoardGeometry geo = board.geometry();
+        byte[] data = new byte[binarySize(table)];
+        data[0] = (byte)board.turn();
+        for(int p=0; p<geo.players(); p++)
+            if(board.skipped(p))
+                data[1] |= 1 << p;
+
+        int at = 2;
+        for(int p=0; p<geo.players(); p++)
+            for(int i=0; i<usedBytes(table); i++)
+                data[at++] = (byte)(board.used(p) >>> (8 * i));
+
+        int cellBits = bitsPerCell(geo);
+        int bit = at * 8;
+        for(int r=0; r<geo.rows(); r++)
+            for(int c=0; c<geo.cols(); c++)
+            {
+                int value = board.owner(c, r) + 1;
+                for(int b=0; b<cellBits; b++, bit++)
+                    if((value & (1 << b)) != 0)
+                        data[bit >>> 3] |= 1 << (bit & 7);
+            }
+        return data;
+    }
+
+    /**
+     * Sets a board to the position held in a binary form
+     * @param board - the board to set up
+     * @param data - bytes from toBytes for a board with the same placements
+     * @throws IllegalArgumentException - when the bytes do not hold a position for the board
+     */
+    public static void fromBytes(BitBoard board, byte[] data)
+    {
+        PlacementTable table = board.placements();
+        BoardGeometry geo = board.geometry();
+        int players = geo.players();
+        if(data.length != binarySize(table))
+            throw new IllegalArgumentException("expected "+binarySize(table)+" bytes, got "+data.length);
+
+        int turn = data[0] & 0xFF;
+        long skipped = data[1] & 0xFF;
+        if(turn >= players)
+            throw new IllegalArgumentException("bad player to move "+turn);
+        if((skipped >>> players) != 0)
+            throw new IllegalArgumentException("bad skip flags "+skipped);
+
+        int at = 2;
+        long[] used = new long[players];
+        for(int p=0; p<players; p++)
+        {
+            for(int i=0; i<usedBytes(table); i++)
+                used[p] |= (long)(data[at++] & 0xFF) << (8 * i);
+            checkUsed(table, used[p]);
+        }
+
+        int cellBits = bitsPerCell(geo);
+        int[] owners = new int[geo.rows() * geo.cols()];
+        int bit = at * 8;
+        for(int i=0; i<owners.length; i++)
+        {
+            int value = 0;
+            for(int b=0; b<cellBits; b++, bit++)
+                if((data[bit >>> 3] & (1 << (bit & 7))) != 0)
+                    value |= 1 << b;
+            if(value > players)
+                throw new IllegalArgumentException("bad cell value "+value+" at cell "+i);
+            owners[i] = value - 1;
+        }
+        for(; bit < data.length * 8; bit++)
+            if((data[bit >>> 3] & (1 << (bit & 7))) != 0)
+                throw new IllegalArgumentException("padding bits are not zero");
+
+        board.setPosition(owners, used, turn, skipped);
+    }
+
+    /**
+     * Returns the text form of a position
+     * @param board - the position
+     * @return - the position in text notation
+     */
+    public static String toText(BitBoard board)
+    {
+        BoardGeometry geo = board.geometry();
+        StringBuilder text = new StringBuilder(geo.rows() * (geo.cols() + 1) + 16);
+        for(int r=0; r<geo.rows(); r++)
+        {
+            if(r > 0)
+                text.append('/');
+            int empty = 0;
+            for(int c=0; c<geo.cols(); c++)
+            {
+                int owner = board.owner(c, r);
+                if(owner < 0)
+                    empty++;
+                else
+                {
+                    if(empty > 0)
+                        text.append(empty);
+                    empty = 0;
+                    text.append((char)('a' + owner));
+                }
+            }
+            if(empty > 0)
+                text.append(empty);
+        }
+
+        text.append(' ').append((char)('a' + board.turn())).append(' ');
+        int skips = 0;
+        for(int p=0; p<geo.players(); p++)
+            if(board.skipped(p))
+            {
+                text.append((char)('a' + p));
+                skips++;
+            }
+        if(skips == 0)
+            text.append('-');
+
+        text.append(' ');
+        for(int p=0; p<geo.players(); p++)
+        {
+            if(p > 0)
+                text.append(',');
+            text.append(Long.toHexString(board.used(p)));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Sets a board to the position held in a text form
+     * @param board - the board to set up
+     * @param text - text from toText for a board with the same placements
+     * @throws IllegalArgumentException - when the text does not hold a position for the board
+     */
+    public static void fromText(BitBoard board, String text)
+    {
+        BoardGeometry geo = board.geometry();
+        int players = geo.players();
+        String[] fields = text.trim().split("\\s+");
+        if(fields.length != 4)
+            throw new IllegalArgumentException("expected 4 fields, got "+fields.length);
+
+        String[] rows = fields[0].split("/", -1);
+        if(rows.length != geo.rows())
+            throw new IllegalArgumentException("expected "+geo.rows()+" rows, got "+rows.length);
+        int[] owners = new int[geo.rows() * geo.cols()];
+        for(int r=0; r<rows.length; r++)
+        {
+            int c = 0;
+            String row = rows[r];
+            for(int i=0; i<row.length(); i++)
+            {
+                char ch = row.charAt(i);
+                if(ch >= '0' && ch <= '9')
+                {
+                    int run = 0;
+                    for(; i < row.length() && row.charAt(i) >= '0' && row.charAt(i) <= '9'; i++)
+                    {
+                        run = run * 10 + (row.charAt(i) - '0');
+                        if(run == 0 || run > geo.cols())
+                            throw new IllegalArgumentException("bad run of empty cells in row "+r);
+                    }
+                    i--;
+                    if(c + run > geo.cols())
+                        throw new IllegalArgumentException("bad run of empty cells in row "+r);
+                    for(int k=0; k<run; k++)
+                        owners[r * geo.cols() + c++] = -1;
+                }
+                else
+                {
+                    if(c >= geo.cols())
+                        throw new IllegalArgumentException("row "+r+" is too long");
+                    owners[r * geo.cols() + c++] = player(ch, players);
+                }
+            }
+            if(c != geo.cols())
+                throw new IllegalArgumentException("row "+r+" has "+c+" cells, expected "+geo.cols());
+        }
+
+        if(fields[1].length() != 1)
+            throw new IllegalArgumentException("bad player to move "+fields[1]);
+        int turn = player(fields[1].charAt(0), players);
+
+        long skipped = 0;
+        if(!fields[2].equals("-"))
+            for(int i=0; i<fields[2].length(); i++)
+                skipped |= 1L << player(fields[2].charAt(i), players);
+
+        String[] masks = fields[3].split(",", -1);
+        if(masks.length != players)
+            throw new IllegalArgumentException("expected "+players+" used piece masks, got "+masks.length);
+        long[] used = new long[players];
+        for(int p=0; p<players; p++)
+        {
+            try
+            {
+                used[p] = Long.parseUnsignedLong(masks[p], 16);
+            }
+            catch(NumberFormatException e)
+            {
+                throw new IllegalArgumentException("bad used piece mask "+masks[p], e);
+            }
+            checkUsed(board.placements(), used[p]);
+        }
+
+        board.setPosition(owners, used, turn, skipped);
+    }
+
+    /**
+     * Returns the player a letter stands for
+     */
+    private static int player(char letter, int players)
+    {
+        int p = letter - 'a';
+        if(p < 0 || p >= players)
+            throw new IllegalArgumentException("bad player letter '"+letter+"'");
+        return p;
+    }
+
+    /**
+     * Checks a used piece mask only names pieces that exist
+     */
+    private static void checkUsed(PlacementTable table, long used)
+    {
+        if(table.pieces() < 64 && (used >>> table.pieces()) != 0)
+            throw new IllegalArgumentException("used piece mask names pieces that do not exist");
+    }
+
+    /**
+     * Returns the number of bytes used for one player's used pieces
+     */
+    private static int usedBytes(PlacementTable table)
+    {
+        return (table.pieces() + 7) / 8;
+    }
+
+    /**
+     * Returns the number of bits needed to hold empty or any player on a cell
+     */
+    private static int bitsPerCell(BoardGeometry geo)
+    {
+        return 32 - Integer.numberOfLeadingZeros(geo.players());
+    }
+}
@@ -1,13 +1,13 @@
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Scanner;
+import java.util.Random;
 
 /**
  * A random moving AI
  */
 public class RandomAI extends Player
 {
+    // used to pick the move
+    private Random random = new Random();
+
     /**
      * Contructs a random AI given a name and color
      * @param color - color the player is playing as
@@ -25,42 +25,11 @@ public class RandomAI extends Player
      */
     public Move getMove(BlokusBoard board)
     {
-        //System.out.println("my color is "+getColor() + " the turn is "+board.getTurn());
-        ArrayList<IntPoint> avaiableMoves = board.moveLocations(getColor());
-        Collections.shuffle(avaiableMoves);
-        //System.out.println("available move locations "+avaiableMoves);
-        ArrayList<Integer> usableShapePositions = new ArrayList<>();
-        boolean[] used = (getColor()==BlokusBoard.ORANGE)?board.getOrangeUsedShapes():board.getPurpleUsedShapes();
-        for(int x=0; x<used.length; x++)
-            if(!used[x])
-                usableShapePositions.add(x);
-        //System.out.println("usable pieces "+ Arrays.toString(used));
-        Collections.shuffle(usableShapePositions);
-        if(usableShapePositions.isEmpty() ||avaiableMoves.isEmpty())
+        MoveList moves = board.legalMoves(getColor());
+        if(moves.isEmpty())
             return null;
         else
-        {
-            //System.out.println("hi");
-            Move move = null;
-            for(IntPoint movLoc: avaiableMoves)
-                for(Integer position: usableShapePositions)
-                {
-                    for(int i=0; i<8;i++) {
-                        boolean flip = i >= 3;
-                        int rotation = i % 4;
-                        boolean[][] shape = board.getShapes().get(position).manipulatedShape(flip, rotation);
-                        for (int r = -shape.length+1; r <shape.length;  r++)
-                            for (int c = -shape[0].length+1; c < shape[0].length; c++)
-                            {
-                                IntPoint topLeft = new IntPoint(movLoc.getX()+c,movLoc.getY()+r);
-                                Move test = new Move(position,flip,rotation,topLeft);
-                                if(board.isValidMove(test,getColor()))
-                                    return test;
-                            }
-                    }
-                }
-            return null;
-        }
+            return board.toMove(moves.get(random.nextInt(moves.size())));
     }
 
     /**
@@ -0,0 +1,378 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Plays random games to the end from any position, as fast as possible and without
+ * allocating anything once it is created. Monte Carlo searches (see MonteCarloAI) and
+ * estimates of who is ahead use it to play many games from the same position.
+ *
+ * Generating every legal move to pick one is most of the cost of a random game, so a
+ * move is picked by sampling instead: a random corner the player can play into, a random
+ * piece the player still has and a random placement of that piece covering the corner.
+ * The placement only has to be checked against the squares the player may not use,
+ * since it covers a corner already. During a game those squares only ever grow, so a
+ * placement that fails once fails for the rest of the game, and it is dropped from the
+ * player's candidates for its corner and piece instead of being tried again. A piece with
+ * no candidates left at a corner is dropped from that corner, and a corner with no
+ * pieces left from the player's corners. The first time a corner is used in a game, the
+ * pieces with more squares than there are free squares around it are dropped at once.
+ * A player with no corners left has to pass, so passes need no search of their own.
+ * The moves played are random but not equally likely.
+ *
+ * The candidates of each player are kept in one array per player, with the placements
+ * of each corner and piece in a slice of it; a dropped placement is swapped to the end
+ * of its slice and the slice made shorter. Starting a new game only marks every slice
+ * as full again, through a game number stored with each slice.
+ *
+ * Searches play many games from positions reached from the same position (the root, see
+ * setRoot). A placement that fails at the root fails in all of them, so each slice is also
+ * cut down once for the root, the first time it is used, and every game starts from that
+ * shorter slice instead of dropping the same placements again.
+ *
+ * Each instance has its own board and SplittableRandom and must only be used by one
+ * thread; give every thread its own.
+ */
+public class RandomPlayout
+{
+    // the board the games are played on
+    private final BitBoard bits;
+    // picks the moves
+    private final SplittableRandom random;
+    // the footprint masks of the placements, see PlacementTable.footprints
+    private final long[] footprints;
+    // number of longs per mask, cells per mask, number of pieces and players
+    private final int words;
+    private final int cells;
+    private final int pieces;
+    private final int players;
+
+    // the placements of piece k covering cell c are, for every player p,
+    // candidates[p][coverStart[c * pieces + k] .. + the length of the slice)
+    private final int[] coverStart;
+    private final int[][] candidates;
+    // length of the slice of player p, cell c and piece k at (p * cells + c) * pieces + k
+    private final int[] lengths;
+    // game the length was last set in, the slice is full when it is not the current game
+    private final int[] lengthGames;
+    // mask of the pieces of player p with candidates left at cell c, at p * cells + c
+    private final long[] livePieces;
+    private final int[] livePiecesGames;
+    // mask of the pieces with any placement covering each cell
+    private final long[] coverPieces;
+    // mask of the pieces with at most n squares at index n, up to the largest piece
+    private final long[] piecesUpTo;
+    // the board layout and two masks of room for working out the free squares around a corner
+    private final BoardGeometry geo;
+    private final long[] room;
+    // length of each slice after dropping the placements that fail at the root
+    private final int[] rootLengths;
+    // root the root length was found for
+    private final int[] rootLengthRoots;
+    // squares each player may not use at the root, player p uses words [p * words, (p + 1) * words)
+    private final long[] rootForbidden;
+    // corners of each player with no candidates left, player p uses words [p * words, (p + 1) * words)
+    private final long[] dead;
+    // number of the current game and of the current root
+    private int game = 0;
+    private int root = 1;
+
+    /**
+     * Creates a playout engine
+     * @param table - the placements of the board to play on
+     * @param seed - seed for the random moves
+     */
+    public RandomPlayout(PlacementTable table, long seed)
+    {
+        this.bits = new BitBoard(table);
+        this.random = new SplittableRandom(seed);
+        this.footprints = table.footprints();
+        this.words = table.geometry().words();
+        this.cells = words * 64;
+        this.pieces = table.pieces();
+        this.players = table.geometry().players();
+        this.geo = table.geometry();
+        this.room = new long[2 * words];
+
+        int largest = 0;
+        for(int k=0; k<pieces; k++)
+            largest = Math.max(largest, table.pieceSize(k));
+        piecesUpTo = new long[largest + 1];
+        for(int n=1; n<=largest; n++)
+            for(int k=0; k<pieces; k++)
+                if(table.pieceSize(k) <= n)
+                    piecesUpTo[n] |= 1L << k;
+
+        coverStart = new int[cells * pieces + 1];
+        coverPieces = new long[cells];
+        for(int id=0; id<table.size(); id++)
+            for(int c = Bits.nextSetBit(footprints, id * words, words, 0); c >= 0; c = Bits.nextSetBit(footprints, id * words, words, c + 1))
+            {
+                coverStart[c * pieces + table.piece(id) + 1]++;
+                coverPieces[c] |= 1L << table.piece(id);
+            }
+        for(int i=0; i<cells * pieces; i++)
+            coverStart[i + 1] += coverStart[i];
+        int[] cover = new int[coverStart[cells * pieces]];
+        int[] next = coverStart.clone();
+        for(int id=0; id<table.size(); id++)
+            for(int c = Bits.nextSetBit(footprints, id * words, words, 0); c >= 0; c = Bits.nextSetBit(footprints, id * words, words, c + 1))
+                cover[next[c * pieces + table.piece(id)]++] = id;
+
+        candidates = new int[players][];
+        for(int p=0; p<players; p++)
+            candidates[p] = cover.clone();
+        lengths = new int[players * cells * pieces];
+        lengthGames = new int[players * cells * pieces];
+        livePieces = new long[players * cells];
+        livePiecesGames = new int[players * cells];
+        rootLengths = new int[players * cells * pieces];
+        rootLengthRoots = new int[players * cells * pieces];
+        rootForbidden = new long[players * words];
+        dead = new long[players * words];
+    }
+
+    /**
+     * Returns the board the games are played on. Setting it up and making moves on it
+     * before calling play continues the game from there.
+     * @return - the board
+     */
+    public BitBoard board()
+    {
+        return bits;
+    }
+
+    /**
+     * Sets the position the following games start from or lead on from, so candidates that
+     * fail there are only dropped once for all of them. A game from a position that does
+     * not lead on from the root (a square forbidden at the root is not forbidden any more)
+     * clears the root again.
+     * @param state - the position, from BitBoard.state()
+     */
+    public void setRoot(long[] state)
+    {
+        for(int p=0; p<players; p++)
+            System.arraycopy(state, bits.forbiddenAt(p), rootForbidden, p * words, words);
+        root++;
+    }
+
+    /**
+     * Plays a random game to the end from the position of a board, which is not changed
+     * @param board - the position to start from
+     * @return - the players with the most squares at the end, see BitBoard.leaders
+     */
+    public long play(BlokusBoard board)
+    {
+        board.copyTo(bits);
+        return play();
+    }
+
+    /**
+     * Plays a random game to the end from a state taken from BitBoard.state()
+     * @param state - the position to start from
+     * @return - the players with the most squares at the end, see BitBoard.leaders
+     */
+    public long play(long[] state)
+    {
+        bits.restore(state);
+        return play();
+    }
+
+    /**
+     * Plays a random game to the end from the position on board()
+     * @return - the players with the most squares at the end, see BitBoard.leaders
+     */
+    public long play()
+    {
+        game++;
+        Arrays.fill(dead, 0L);
+        long[] state = bits.state();
+        boolean fromRoot = true;
+        for(int p=0; p<players; p++)
+            for(int w=0; w<words; w++)
+                fromRoot &= (rootForbidden[p * words + w] & ~state[bits.forbiddenAt(p) + w]) == 0;
+        if(!fromRoot)
+        {
+            Arrays.fill(rootForbidden, 0L);
+            root++;
+        }
+        while(!bits.isGameOver())
+        {
+            int player = bits.turn();
+            int move = randomMove(player);
+            if(move == BitBoard.PASS)
+                bits.skip(player);
+            else
+                bits.play(move);
+        }
+        return bits.leaders();
+    }
+
+    /**
+     * Picks a random legal move for a player, dropping the candidates found to be illegal
+     * @param player - the player
+     * @return - a legal placement id, BitBoard.PASS when the player has none
+     */
+    private int randomMove(int player)
+    {
+        long[] state = bits.state();
+        int anchorsAt = bits.anchorsAt(player);
+        int forbiddenAt = bits.forbiddenAt(player);
+        long available = bits.available(player);
+        int deadAt = player * words;
+        int[] ids = candidates[player];
+        if(available == 0)
+            return BitBoard.PASS;
+
+        while(true)
+        {
+            int corners = 0;
+            for(int w=0; w<words; w++)
+                corners += Long.bitCount(state[anchorsAt + w] & ~dead[deadAt + w]);
+            if(corners == 0)
+                return BitBoard.PASS;
+            int cell = nthCorner(state, anchorsAt, deadAt, random.nextInt(corners));
+
+            int at = player * cells + cell;
+            if(livePiecesGames[at] != game)
+            {
+                livePiecesGames[at] = game;
+                livePieces[at] = coverPieces[cell] & piecesUpTo[freeAround(cell, state, forbiddenAt)];
+            }
+            long live = livePieces[at] & available;
+            if(live == 0)
+            {
+                dead[deadAt + (cell >>> 6)] |= 1L << cell;
+                continue;
+            }
+            int piece = Long.numberOfTrailingZeros(nthSetBit(live, random.nextInt(Long.bitCount(live))));
+
+            int slot = at * pieces + piece;
+            int start = coverStart[cell * pieces + piece];
+            if(lengthGames[slot] != game)
+            {
+                lengthGames[slot] = game;
+                lengths[slot] = rootLength(slot, player, start, coverStart[cell * pieces + piece + 1] - start);
+            }
+            int length = lengths[slot];
+            int i = start + ((length > 1) ? random.nextInt(length) : 0);
+            while(length > 0)
+            {
+                int id = ids[i];
+                if(fits(id, state, forbiddenAt))
+                {
+                    lengths[slot] = length;
+                    return id;
+                }
+                // the placement overlaps squares the player may not use, for the rest of the game;
+                // the last candidate takes its place and is tried next
+                length--;
+                ids[i] = ids[start + length];
+                ids[start + length] = id;
+                if(i == start + length)
+                    i = start;
+            }
+            lengths[slot] = 0;
+            livePieces[at] &= ~(1L << piece);
+        }
+    }
+
+    /**
+     * Counts the free squares a piece covering a corner could reach, stopping at the size
+     * of the largest piece. A piece covering the corner and missing the forbidden squares
+     * only covers free squares joined to the corner by fewer steps than it has squares.
+     * @param cell - the corner
+     * @param state - the board state
+     * @param forbiddenAt - offset of the player's forbidden mask in the state
+     * @return - the number of free squares found, from 1 to the size of the largest piece
+     */
+    private int freeAround(int cell, long[] state, int forbiddenAt)
+    {
+        int largest = piecesUpTo.length - 1;
+        Bits.clear(room, 0, words);
+        Bits.set(room, 0, cell);
+        int count = 1;
+        for(int step=1; step<largest; step++)
+        {
+            geo.orthogonal(room, 0, room, words);
+            int grown = 0;
+            for(int w=0; w<words; w++)
+            {
+                room[w] |= room[words + w] & ~state[forbiddenAt + w];
+                grown += Long.bitCount(room[w]);
+            }
+            if(grown == count || grown >= largest)
+                return Math.min(grown, largest);
+            count = grown;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the length of a slice once the placements that fail at the root are dropped,
+     * dropping them the first time the slice is used with the root
+     * @param slot - the slice, see lengths
+     * @param player - the player of the slice
+     * @param start - start of the slice in the player's candidates
+     * @param full - the number of placements in the slice
+     * @return - the number of placements left
+     */
+    private int rootLength(int slot, int player, int start, int full)
+    {
+        if(rootLengthRoots[slot] == root)
+            return rootLengths[slot];
+        int[] ids = candidates[player];
+        int length = full;
+        for(int i=start; i<start + length; )
+        {
+            int id = ids[i];
+            if(fits(id, rootForbidden, player * words))
+                i++;
+            else
+            {
+                length--;
+                ids[i] = ids[start + length];
+                ids[start + length] = id;
+            }
+        }
+        rootLengthRoots[slot] = root;
+        rootLengths[slot] = length;
+        return length;
+    }
+
+    /**
+     * Returns if a placement misses every square in a forbidden mask
+     */
+    private boolean fits(int id, long[] mask, int off)
+    {
+        int at = id * words;
+        for(int w=0; w<words; w++)
+            if((footprints[at + w] & mask[off + w]) != 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the bit index of the n-th (from 0) corner of a player that is not dead
+     */
+    private int nthCorner(long[] state, int anchorsAt, int deadAt, int n)
+    {
+        for(int w=0; ; w++)
+        {
+            long corners = state[anchorsAt + w] & ~dead[deadAt + w];
+            int count = Long.bitCount(corners);
+            if(n < count)
+                return w * 64 + Long.numberOfTrailingZeros(nthSetBit(corners, n));
+            n -= count;
+        }
+    }
+
+    /**
+     * Returns the n-th (from 0) lowest set bit of a long as a mask with only that bit set
+     */
+    private static long nthSetBit(long bits, int n)
+    {
+        for(; n > 0; n--)
+            bits &= bits - 1;
+        return Long.lowestOneBit(bits);
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Mask kernels that work on one long at a time
+ */
+public class ScalarKernels implements MaskKernels
+{
+    /**
+     * Returns if a placement covers no forbidden cell and at least one anchor, see MaskKernels
+     */
+    public boolean isLegal(long[] footprints, int off, long[] state, int forbidden, int anchors, int words)
+    {
+        boolean touchesAnchor = false;
+        for(int w=0; w<words; w++)
+        {
+            long f = footprints[off + w];
+            if((f & state[forbidden + w]) != 0)
+                return false;
+            if((f & state[anchors + w]) != 0)
+                touchesAnchor = true;
+        }
+        return touchesAnchor;
+    }
+
+    /**
+     * Adds every legal placement in a range of placement ids to a list, see MaskKernels
+     */
+    public int legalPlacements(long[] footprints, int firstId, int endId, long[] state, int forbidden, int anchors, int words, MoveList out)
+    {
+        int added = 0;
+        for(int id=firstId; id<endId; id++)
+            if(isLegal(footprints, id * words, state, forbidden, anchors, words))
+            {
+                out.add(id);
+                added++;
+            }
+        return added;
+    }
+
+    /**
+     * Puts a placement down for a player, see MaskKernels
+     */
+    public void apply(long[] state, int cells, int occupied, int forbidden, int anchors, int players, int player,
+                      long[][] masks, int off, int words)
+    {
+        long[] footprints = masks[0];
+        long[] edges = masks[1];
+        long[] corners = masks[2];
+        int ownForbidden = forbidden + player * words;
+        int ownAnchors = anchors + player * words;
+        for(int w=0; w<words; w++)
+        {
+            long f = footprints[off + w];
+            state[cells + w] |= f;
+            state[occupied + w] |= f;
+            for(int p=0; p<players; p++)
+            {
+                state[forbidden + p * words + w] |= f;
+                state[anchors + p * words + w] &= ~f;
+            }
+            long nowForbidden = state[ownForbidden + w] | edges[off + w];
+            state[ownForbidden + w] = nowForbidden;
+            state[ownAnchors + w] = (state[ownAnchors + w] | corners[off + w]) & ~nowForbidden;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * The helper threads the search AIs (JakeAI, MonteCarloAI) share to search one move
+ * with several threads. There is one pool for the whole program with one thread less
+ * than there are cores, created the first time it is needed, so however many games run
+ * at once the helpers never add up to more busy threads than cores and no move pays
+ * for starting threads.
+ *
+ * The thread asking for a move always does part of the work itself. Helpers that are
+ * still waiting for a pool thread when it is done, because other games are using them,
+ * are dropped instead of waited for.
+ */
+public final class SearchPool
+{
+    /**
+     * Holds the pool. The class is only loaded the first time it is needed.
+     */
+    private static class Shared
+    {
+        static final int SIZE = Runtime.getRuntime().availableProcessors() - 1;
+        static final ExecutorService POOL = (SIZE < 1) ? null : Executors.newFixedThreadPool(SIZE, task -> {
+            Thread thread = new Thread(task, "search helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private SearchPool()
+    {
+    }
+
+    /**
+     * Returns the most helper threads a search can get
+     * @return - one less than the number of cores, 0 on a single core
+     */
+    public static int size()
+    {
+        return Shared.SIZE;
+    }
+
+    /**
+     * Runs a task on the calling thread and on helper threads from the pool, and returns
+     * once the calling thread's part and every helper that started are done. The caller's
+     * part should make the helpers stop when it returns.
+     * @param threads - the number of threads wanted, including the calling thread
+     * @param task - the work, called with 0 on the calling thread and 1, 2, ... on the helpers
+     */
+    public static void run(int threads, IntConsumer task)
+    {
+        int helpers = Math.min(threads - 1, size());
+        if(helpers <= 0)
+        {
+            task.accept(0);
+            return;
+        }
+
+        // each helper is 0 while queued, 1 once started and 2 once dropped
+        AtomicInteger[] states = new AtomicInteger[helpers];
+        CountDownLatch done = new CountDownLatch(helpers);
+        for(int i=0; i<helpers; i++)
+        {
+            AtomicInteger state = states[i] = new AtomicInteger();
+            int number = i + 1;
+            Shared.POOL.execute(() -> {
+                if(!state.compareAndSet(0, 1))
+                    return;
+                try
+                {
+                    task.accept(number);
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            });
+        }
+
+        try
+        {
+            task.accept(0);
+        }
+        finally
+        {
+            for(AtomicInteger state: states)
+                if(state.compareAndSet(0, 2))
+                    done.countDown();
+            boolean interrupted = false;
+            while(true)
+            {
+                try
+                {
+                    done.await();
+                    break;
+                }
+                catch(InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+            if(interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -35,6 +35,16 @@ public class ServersListener implements Runnable
     // name of the connected AI
     private String playerName;
 
+    /**
+     * Holds the transposition table shared by the search AIs of every game the server runs.
+     * Its size in megabytes comes from the blokus.tableMegabytes property (default 256).
+     * The class is only loaded, and the memory taken, when a search AI makes its first move.
+     */
+    private static class SharedTable
+    {
+        static final TranspositionTable TABLE = new TranspositionTable(Integer.getInteger("blokus.tableMegabytes", 256));
+    }
+
     /**
      * Constructs a server lister for running games
      * @param os - output steam
@@ -48,6 +58,11 @@ public class ServersListener implements Runnable
         // Adds testing AIs
         testingAIsAsOrange.add(new RandomAI(board.ORANGE, "Servers Random AI"));
         testingAIsAsPurple.add(new RandomAI(board.PURPLE, "Servers Random AI"));
+        int threads = SearchPool.size() + 1;
+        testingAIsAsOrange.add(new JakeAI(BlokusBoard.ORANGE, "Servers Search AI", JakeAI.DEFAULT_MILLIS, threads, ServersListener::transpositions));
+        testingAIsAsPurple.add(new JakeAI(BlokusBoard.PURPLE, "Servers Search AI", JakeAI.DEFAULT_MILLIS, threads, ServersListener::transpositions));
+        testingAIsAsOrange.add(new MonteCarloAI(BlokusBoard.ORANGE, "Servers Monte Carlo AI", MonteCarloAI.DEFAULT_MILLIS, 0, threads));
+        testingAIsAsPurple.add(new MonteCarloAI(BlokusBoard.PURPLE, "Servers Monte Carlo AI", MonteCarloAI.DEFAULT_MILLIS, 0, threads));
 
         // Adds fourth Period AIs
 
@@ -178,14 +193,34 @@ public class ServersListener implements Runnable
                 {
                     if(board.status()==BlokusBoard.PLAYING)
                     {
-                        if(firstPlayersTurn)
+                        // a side with no legal move skips without being asked for one
+                        if(firstPlayersTurn && !board.hasLegalMove(BlokusBoard.ORANGE))
+                        {
+                            System.out.println("ORANGE Connected AI has no moves and skips");
+                            board.orangeSkips();
+                            commandFromSerever = new CommandToClient(CommandToClient.PLAYER_SKIP);
+                            os.writeObject(commandFromSerever);
+                            os.reset();
+                            firstPlayersTurn = false;
+                        }
+                        else if(!firstPlayersTurn && !board.hasLegalMove(BlokusBoard.PURPLE))
+                        {
+                            System.out.println("PURPLE Server AI has no moves and skips");
+                            board.purpleSkips();
+                            commandFromSerever = new CommandToClient(CommandToClient.OPPONENT_SKIP);
+                            os.writeObject(commandFromSerever);
+                            os.reset();
+                            firstPlayersTurn = true;
+                        }
+                        else if(firstPlayersTurn)
                         {
                             commandFromSerever = new CommandToClient(CommandToClient.MAKE_MOVE);
                             os.writeObject(commandFromSerever);
                             os.reset();
 
                             CommandToServer categoryCommand = (CommandToServer)is.readObject();
-                            Move m =(Move) categoryCommand.getCommandData();
+                            Integer packed =(Integer) categoryCommand.getCommandData();
+                            Move m = (packed==null)?null:Move.fromPacked(packed);
                             //System.out.println("Visitor moved to  "+l);
 
                             if(m==null)
@@ -201,7 +236,7 @@ public class ServersListener implements Runnable
                             else if(board.isValidMove(m,BlokusBoard.ORANGE))
                             {
                                 board.makeMove(m,BlokusBoard.ORANGE);
-                                commandFromSerever = new CommandToClient(CommandToClient.SUCCESSFUL_MOVE,m);
+                                commandFromSerever = new CommandToClient(CommandToClient.SUCCESSFUL_MOVE,m.toPacked());
                                 os.writeObject(commandFromSerever);
                                 os.reset();
                             }
@@ -220,7 +255,9 @@ public class ServersListener implements Runnable
                         }
                         else
                         {
-                            Move m=opponentAsPurple.getMove(new BlokusBoard((board)));
+                            BlokusBoard view=board.shareCopy();
+                            Move m=opponentAsPurple.getMove(view);
+                            view.release();
 
                             if(m==null)
                             {
@@ -235,7 +272,7 @@ public class ServersListener implements Runnable
                             else if(board.isValidMove(m,BlokusBoard.PURPLE))
                             {
                                 board.makeMove(m,BlokusBoard.PURPLE);
-                                commandFromSerever = new CommandToClient(CommandToClient.OPPONENT_MOVE,m);
+                                commandFromSerever = new CommandToClient(CommandToClient.OPPONENT_MOVE,m.toPacked());
                                 os.writeObject(commandFromSerever);
                                 os.reset();
                             }
@@ -286,9 +323,30 @@ public class ServersListener implements Runnable
                 {
                     if(board.status()==BlokusBoard.PLAYING)
                     {
-                        if(firstPlayersTurn)
+                        // a side with no legal move skips without being asked for one
+                        if(firstPlayersTurn && !board.hasLegalMove(BlokusBoard.ORANGE))
+                        {
+                            System.out.println("ORANGE Server AI has no moves and skips");
+                            board.orangeSkips();
+                            commandFromSerever = new CommandToClient(CommandToClient.OPPONENT_SKIP);
+                            os.writeObject(commandFromSerever);
+                            os.reset();
+                            firstPlayersTurn = false;
+                        }
+                        else if(!firstPlayersTurn && !board.hasLegalMove(BlokusBoard.PURPLE))
+                        {
+                            System.out.println("PURPLE Connected AI has no moves and skips");
+                            board.purpleSkips();
+                            commandFromSerever = new CommandToClient(CommandToClient.PLAYER_SKIP);
+                            os.writeObject(commandFromSerever);
+                            os.reset();
+                            firstPlayersTurn = true;
+                        }
+                        else if(firstPlayersTurn)
                         {
-                            Move m=opponentAsOrange.getMove(new BlokusBoard(board));
+                            BlokusBoard view=board.shareCopy();
+                            Move m=opponentAsOrange.getMove(view);
+                            view.release();
                             if(m==null)
                             {
                                 System.out.println("ORANGE Sever AI skips");
@@ -303,7 +361,7 @@ public class ServersListener implements Runnable
                                 //System.out.println("ORANGE Sever AI moves"+m);
                                 //System.out.println(Arrays.deepToString(board.getShapes().get(m.getPieceNumber()).manipulatedShape(m.isFlip(), m.getRotation())));
                                 board.makeMove(m,BlokusBoard.ORANGE);
-                                commandFromSerever = new CommandToClient(CommandToClient.OPPONENT_MOVE,m);
+                                commandFromSerever = new CommandToClient(CommandToClient.OPPONENT_MOVE,m.toPacked());
                                 os.writeObject(commandFromSerever);
                                 os.reset();
                             }
@@ -327,7 +385,8 @@ public class ServersListener implements Runnable
                             os.reset();
 
                             CommandToServer categoryCommand = (CommandToServer)is.readObject();
-                            Move m =(Move) categoryCommand.getCommandData();
+                            Integer packed =(Integer) categoryCommand.getCommandData();
+                            Move m = (packed==null)?null:Move.fromPacked(packed);
 
                             if(m==null)
                             {
@@ -341,7 +400,7 @@ public class ServersListener implements Runnable
                             else if(board.isValidMove(m,BlokusBoard.PURPLE))
                             {
                                 board.makeMove(m,BlokusBoard.PURPLE);
-                                commandFromSerever = new CommandToClient(CommandToClient.SUCCESSFUL_MOVE,m);
+                                commandFromSerever = new CommandToClient(CommandToClient.SUCCESSFUL_MOVE,m.toPacked());
                                 os.writeObject(commandFromSerever);
                                 os.reset();
                             }
@@ -393,6 +452,13 @@ public class ServersListener implements Runnable
             e.printStackTrace();
         }
     }
-}
-
 
+    /**
+     * Returns the transposition table shared by the search AIs of every game
+     * @return - the shared table
+     */
+    private static TranspositionTable transpositions()
+    {
+        return SharedTable.TABLE;
+    }
+}
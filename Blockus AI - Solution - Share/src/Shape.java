@@ -15,6 +15,16 @@ public class Shape
     public static final int ONE_EIGHTY=2;
     public static final int TWO_SEVENTY=3;
 
+    // number of forms every shape has (4 rotations, flipped and not flipped)
+    public static final int FORMS = 8;
+
+    // stores for each form the index of the first form that looks the same
+    private final int[] canonical = new int[FORMS];
+    // stores the index of every form that does not look like an earlier form
+    private final int[] uniqueForms;
+    // stores the number of squares in the shape
+    private final int cellCount;
+
     public Shape(boolean[][] initial)
     {
         forms.add(initial);
@@ -25,6 +35,123 @@ public class Shape
         forms.add(rotate(flip(initial),1));
         forms.add(rotate(flip(initial),2));
         forms.add(rotate(flip(initial),3));
+
+        int squares = 0;
+        for(boolean[] row: initial)
+            for(boolean square: row)
+                if(square)
+                    squares++;
+        cellCount = squares;
+
+        int unique = 0;
+        for(int f=0; f<FORMS; f++)
+        {
+            canonical[f] = f;
+            for(int g=0; g<f; g++)
+                if(Arrays.deepEquals(forms.get(g), forms.get(f))) {
+                    canonical[f] = g;
+                    break;
+                }
+            if(canonical[f]==f)
+                unique++;
+        }
+        uniqueForms = new int[unique];
+        unique = 0;
+        for(int f=0; f<FORMS; f++)
+            if(canonical[f]==f)
+                uniqueForms[unique++] = f;
+    }
+
+    /**
+     * Returns the form index of a flip/rotation combination.
+     * Forms 0-3 are the rotations of the original shape, 4-7 the rotations of the flipped shape.
+     * @param flipped - if the shape is flipped
+     * @param rotation - the number of times the shape is rotated (0-3)
+     * @return - the form index (0-7)
+     */
+    public static int formIndex(boolean flipped, int rotation)
+    {
+        return ((flipped)?4:0)+rotation;
+    }
+
+    /**
+     * Returns if a form is flipped
+     * @param form - form index (0-7)
+     * @return - true if the form is a flipped version of the shape
+     */
+    public static boolean isFlipped(int form)
+    {
+        return form >= 4;
+    }
+
+    /**
+     * Returns how many times a form is rotated
+     * @param form - form index (0-7)
+     * @return - the number of rotations (0-3)
+     */
+    public static int rotation(int form)
+    {
+        return form % 4;
+    }
+
+    /**
+     * Returns the number of squares the shape covers
+     * @return - number of squares in the shape
+     */
+    public int cellCount()
+    {
+        return cellCount;
+    }
+
+    /**
+     * Returns the number of different looking orientations of the shape.
+     * Symmetric shapes have fewer than 8, the single square has 1.
+     * @return - number of distinct orientations
+     */
+    public int orientationCount()
+    {
+        return uniqueForms.length;
+    }
+
+    /**
+     * Returns the form index of one of the distinct orientations
+     * @param i - which distinct orientation (0 to orientationCount()-1)
+     * @return - the form index (0-7), usable with isFlipped and rotation
+     */
+    public int orientation(int i)
+    {
+        return uniqueForms[i];
+    }
+
+    /**
+     * Returns the first form that looks the same as the provided form
+     * @param form - form index (0-7)
+     * @return - the form index of the canonical version of the form
+     */
+    public int canonicalForm(int form)
+    {
+        return canonical[form];
+    }
+
+    /**
+     * Returns the first form that looks the same as the provided flip/rotation
+     * @param flipped - if the shape is flipped
+     * @param rotation - the number of times the shape is rotated (0-3)
+     * @return - the form index of the canonical version
+     */
+    public int canonicalForm(boolean flipped, int rotation)
+    {
+        return canonical[formIndex(flipped, rotation)];
+    }
+
+    /**
+     * Returns one form of the shape
+     * @param form - form index (0-7)
+     * @return - 2d array of the form
+     */
+    public boolean[][] form(int form)
+    {
+        return forms.get(form);
     }
 
     /**
@@ -44,8 +171,7 @@ public class Shape
      */
     public boolean[][] manipulatedShape(boolean flipped, int rotation)
     {
-        int index = ((flipped)?4:0)+rotation;
-        return forms.get(index);
+        return forms.get(formIndex(flipped, rotation));
     }
 
     /**
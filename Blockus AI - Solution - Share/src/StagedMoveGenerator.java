@@ -0,0 +1,127 @@
+/**
+ * Hands out a player's legal moves a few at a time, working out the next batch
+ * only when the current one runs out. A search that cuts off after the first
+ * few moves then never pays for generating the rest.
+ *
+ * Each batch holds the moves of one piece, with the pieces taken from the most
+ * cells to the fewest. Inside a batch the moves covering a priority anchor come
+ * first: an anchor the player shares with another player, where placing a piece
+ * also takes the cell away from them.
+ *
+ * The board must be the same whenever next is called, so a search should use one
+ * generator per depth and undo any moves made before asking for the next one.
+ * A generator is reused by calling start again and does not allocate after it is created.
+ */
+public class StagedMoveGenerator
+{
+    // the board the moves are generated for
+    private final BitBoard board;
+    // the pieces in the order they are generated
+    private final int[] order;
+    // number of longs per mask
+    private final int words;
+
+    // the player moves are generated for
+    private int player;
+    // bit k is set when piece k may still be placed
+    private long available;
+    // position in order of the next piece to generate
+    private int nextPiece;
+    // anchors of the player that another player can also use
+    private final long[] priority;
+
+    // the current batch: priority moves, then the rest
+    private final MoveList first = new MoveList(64);
+    private final MoveList rest = new MoveList(256);
+    // position of the next move to hand out from the current batch
+    private int position;
+
+    /**
+     * Creates a generator for a board. Call start before asking for moves.
+     * @param board - the board the moves are generated for
+     */
+    public StagedMoveGenerator(BitBoard board)
+    {
+        this.board = board;
+        this.order = board.placements().piecesBySize();
+        this.words = board.geometry().words();
+        this.priority = new long[words];
+        this.nextPiece = order.length;
+    }
+
+    /**
+     * Starts generating the moves of a player, dropping any moves not handed out yet
+     * @param player - the player
+     * @param available - bit k is set when piece k may still be placed
+     */
+    public void start(int player, long available)
+    {
+        this.player = player;
+        this.available = available;
+        first.clear();
+        rest.clear();
+        position = 0;
+
+        long[] state = board.state();
+        Bits.clear(priority, 0, words);
+        for(int p=0; p<board.geometry().players(); p++)
+            if(p != player)
+                for(int w=0; w<words; w++)
+                    priority[w] |= state[board.anchorsAt(p) + w];
+        boolean anyAnchor = false;
+        for(int w=0; w<words; w++)
+        {
+            priority[w] &= state[board.anchorsAt(player) + w];
+            anyAnchor |= state[board.anchorsAt(player) + w] != 0;
+        }
+        nextPiece = anyAnchor ? 0 : order.length;
+    }
+
+    /**
+     * Starts generating the moves of the player to move
+     */
+    public void start()
+    {
+        start(board.turn(), board.available(board.turn()));
+    }
+
+    /**
+     * Returns the board the moves are generated for
+     * @return - the board
+     */
+    public BitBoard board()
+    {
+        return board;
+    }
+
+    /**
+     * Returns the next legal placement
+     * @return - a placement id, -1 when every legal placement has been handed out
+     */
+    public int nextPlacement()
+    {
+        while(position == first.size() + rest.size())
+        {
+            if(nextPiece == order.length)
+                return -1;
+            first.clear();
+            rest.clear();
+            position = 0;
+            int piece = order[nextPiece++];
+            if((available & (1L << piece)) != 0)
+                board.legalMoves(player, piece, priority, 0, first, rest);
+        }
+        int i = position++;
+        return (i < first.size()) ? first.get(i) : rest.get(i - first.size());
+    }
+
+    /**
+     * Returns the next legal move
+     * @return - a packed move (see Move.pack), -1 when every legal move has been handed out
+     */
+    public int next()
+    {
+        int id = nextPlacement();
+        return (id < 0) ? -1 : board.placements().packed(id);
+    }
+}
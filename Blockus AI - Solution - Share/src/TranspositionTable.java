@@ -0,0 +1,216 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers the results of positions a search has looked at, keyed by the zobrist hash
+ * of the position (see BitBoard.hash). Each entry holds the best move found, the depth
+ * searched, the score and whether the score is exact or only a bound.
+ *
+ * The entries are kept off the Java heap in direct byte buffers, so a table of several
+ * gigabytes is a handful of objects the garbage collector never has to look through.
+ * Direct memory is limited by -XX:MaxDirectMemorySize, which defaults to the heap size.
+ * Entries are grouped in buckets of four, one 64 byte cache line. A position goes in the
+ * bucket picked by the low bits of its hash and can use any entry of it. A new result
+ * for a position replaces its old one unless the old one is from the same search and
+ * deeper; otherwise it takes an empty entry, or the shallowest entry left by another
+ * search, or the shallowest entry of the bucket. Each search gets its own number from
+ * newSearch and passes it to store, so searches of other games sharing the table never
+ * make the current search's entries look old. Entries keep the low 12 bits of the number,
+ * so a number comes round again after 4096 searches, around a hundred full games of both
+ * colors. By then nearly every entry of the old search has been replaced; one that is left
+ * is only kept a little longer, it never gives a wrong result.
+ *
+ * Several search threads, even of different games, can use one table at the same time
+ * without locks. Each entry is two longs: the data and the hash XOR the data. An entry
+ * where one thread wrote one long and another thread the other no longer matches the
+ * hash of either position and reads as empty instead of giving one position the other's
+ * result. Each long is read and written whole (opaque access), so a value is never torn.
+ */
+public class TranspositionTable
+{
+    // values of the bound field
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    // entries per bucket and bytes per entry and bucket
+    private static final int WAYS = 4;
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_BYTES = WAYS * ENTRY_BYTES;
+    // log2 of the buckets per buffer, so a buffer is at most 1 gigabyte
+    private static final int CHUNK_BITS = 24;
+
+    // reads and writes single longs of the buffers whole
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    // the buckets, bucket b is at byte (b & chunkMask) * BUCKET_BYTES of buffer b >>> CHUNK_BITS
+    private final ByteBuffer[] chunks;
+    // number of buckets - 1, the number of buckets is a power of two
+    private final long mask;
+    // buckets per buffer - 1
+    private final long chunkMask;
+    // number of the last search started, the low 12 bits are kept in each entry a search writes
+    private final AtomicInteger searches = new AtomicInteger();
+
+    /**
+     * Creates an empty table
+     * @param megabytes - the most memory the table may use, at least 1
+     */
+    public TranspositionTable(int megabytes)
+    {
+        long buckets = Long.highestOneBit(Math.max(1, megabytes) * (1L << 20) / BUCKET_BYTES);
+        long perChunk = Math.min(buckets, 1L << CHUNK_BITS);
+        chunks = new ByteBuffer[(int)(buckets / perChunk)];
+        for(int i=0; i<chunks.length; i++)
+            chunks[i] = ByteBuffer.allocateDirect((int)(perChunk * BUCKET_BYTES)).order(ByteOrder.nativeOrder());
+        mask = buckets - 1;
+        chunkMask = perChunk - 1;
+    }
+
+    /**
+     * Returns the number of entries in the table
+     * @return - number of positions the table can hold
+     */
+    public long capacity()
+    {
+        return (mask + 1) * WAYS;
+    }
+
+    /**
+     * Empties the table
+     */
+    public void clear()
+    {
+        for(ByteBuffer chunk: chunks)
+            for(int i=0; i<chunk.capacity(); i+=8)
+                LONGS.setOpaque(chunk, i, 0L);
+    }
+
+    /**
+     * Starts a new search. Entries written by other searches are replaced before
+     * deeper entries of the new one.
+     * @return - the number of the search, 0 to 4095, to pass to store
+     */
+    public int newSearch()
+    {
+        return searches.incrementAndGet() & 0xFFF;
+    }
+
+    /**
+     * Looks up a position
+     * @param hash - the hash of the position
+     * @return - the packed entry of the position (see move, depth, bound and score), 0 when it is not in the table
+     */
+    public long probe(long hash)
+    {
+        ByteBuffer chunk = chunks[(int)((hash & mask) >>> CHUNK_BITS)];
+        int at = (int)(hash & chunkMask) * BUCKET_BYTES;
+        for(int way=0; way<WAYS; way++, at+=ENTRY_BYTES)
+        {
+            long entry = (long)LONGS.getOpaque(chunk, at + 8);
+            if(entry != 0 && ((long)LONGS.getOpaque(chunk, at) ^ entry) == hash)
+                return entry;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores the result of searching a position
+     * @param hash - the hash of the position
+     * @param move - the best move found, a placement id below a million or BitBoard.PASS
+     * @param depth - the depth searched, 0 to 255
+     * @param bound - EXACT, LOWER when the true score is at least the score, UPPER when it is at most the score
+     * @param score - the score found for the player to move, within 2 million of 0
+     * @param search - the number of the search storing it, from newSearch
+     */
+    public void store(long hash, int move, int depth, int bound, int score, int search)
+    {
+        ByteBuffer chunk = chunks[(int)((hash & mask) >>> CHUNK_BITS)];
+        int at = (int)(hash & chunkMask) * BUCKET_BYTES;
+        int current = search;
+        int victim = at;
+        int victimRank = Integer.MAX_VALUE;
+        for(int way=0; way<WAYS; way++, at+=ENTRY_BYTES)
+        {
+            long old = (long)LONGS.getOpaque(chunk, at + 8);
+            if(old != 0 && ((long)LONGS.getOpaque(chunk, at) ^ old) == hash)
+            {
+                if(depth < depth(old) && age(old) == current)
+                    return;
+                victim = at;
+                break;
+            }
+            // empty entries first, then entries of other searches, shallowest first within each
+            int rank = (old == 0) ? -1 : ((age(old) == current) ? 256 : 0) + depth(old);
+            if(rank < victimRank)
+            {
+                victimRank = rank;
+                victim = at;
+            }
+        }
+        long entry = pack(move, depth, bound, current, score);
+        LONGS.setOpaque(chunk, victim, hash ^ entry);
+        LONGS.setOpaque(chunk, victim + 8, entry);
+    }
+
+    /**
+     * Packs an entry into a long: the move + 1 in bits 0-19, the depth in bits 20-27,
+     * the bound in bits 28-29, the age in bits 30-41 and the score in bits 42-63.
+     * The bound is never 0, so a packed entry is never 0.
+     */
+    static long pack(int move, int depth, int bound, int age, int score)
+    {
+        return (move + 1) | ((long)depth << 20) | ((long)bound << 28) | ((long)age << 30) | ((long)score << 42);
+    }
+
+    /**
+     * Returns the best move of an entry
+     * @param entry - a packed entry from probe
+     * @return - a placement id or BitBoard.PASS
+     */
+    public static int move(long entry)
+    {
+        return (int)(entry & 0xFFFFF) - 1;
+    }
+
+    /**
+     * Returns the depth an entry was searched to
+     * @param entry - a packed entry from probe
+     * @return - the depth
+     */
+    public static int depth(long entry)
+    {
+        return (int)(entry >>> 20) & 0xFF;
+    }
+
+    /**
+     * Returns the kind of score an entry holds
+     * @param entry - a packed entry from probe
+     * @return - EXACT, LOWER or UPPER
+     */
+    public static int bound(long entry)
+    {
+        return (int)(entry >>> 28) & 3;
+    }
+
+    /**
+     * Returns the number of the search that wrote an entry
+     */
+    private static int age(long entry)
+    {
+        return (int)(entry >>> 30) & 0xFFF;
+    }
+
+    /**
+     * Returns the score of an entry
+     * @param entry - a packed entry from probe
+     * @return - the score for the player to move
+     */
+    public static int score(long entry)
+    {
+        return (int)(entry >> 42);
+    }
+}
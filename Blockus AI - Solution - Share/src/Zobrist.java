@@ -0,0 +1,159 @@
+import java.util.SplittableRandom;
+
+/**
+ * Random 64 bit keys used to hash game positions. A position's hash is the XOR
+ * of the keys of everything in it (each player's cells and used pieces, the
+ * player to move and the skip flags), so it can be updated with a few XORs
+ * whenever something changes. The keys come from a fixed seed, so a position
+ * hashes the same way in every run.
+ */
+public class Zobrist
+{
+    // seed for the keys
+    private static final long SEED = 0x5EED_B10C_05L;
+
+    // number of players
+    private final int players;
+    // number of pieces
+    private final int pieces;
+    // number of bits in a mask that can hold a cell
+    private final int bits;
+
+    // key for each player/cell, player p uses [p*bits, (p+1)*bits)
+    private final long[] cellKeys;
+    // key for each player/used piece, player p uses [p*pieces, (p+1)*pieces)
+    private final long[] pieceKeys;
+    // key for each player to move
+    private final long[] turnKeys;
+    // key for each player's skip flag
+    private final long[] skipKeys;
+    // combined key of each placement for each player: its cells plus its used piece
+    private final long[] placementKeys;
+    // change a placement makes to the difference between the hash of a position and of its transpose
+    private final long[] mirrorKeys;
+
+    /**
+     * Creates the keys for every position on the table's board
+     * @param table - the placements of the pieces on the board
+     */
+    public Zobrist(PlacementTable table)
+    {
+        BoardGeometry geo = table.geometry();
+        players = geo.players();
+        pieces = table.pieces();
+        bits = geo.rows() * geo.stride();
+
+        SplittableRandom random = new SplittableRandom(SEED);
+        cellKeys = new long[players * bits];
+        for(int i=0; i<cellKeys.length; i++)
+            cellKeys[i] = random.nextLong();
+        pieceKeys = new long[players * pieces];
+        for(int i=0; i<pieceKeys.length; i++)
+            pieceKeys[i] = random.nextLong();
+        turnKeys = new long[players];
+        skipKeys = new long[players];
+        for(int p=0; p<players; p++)
+        {
+            turnKeys[p] = random.nextLong();
+            skipKeys[p] = random.nextLong();
+        }
+
+        placementKeys = new long[table.size() * players];
+        long[] footprints = table.footprints();
+        int words = geo.words();
+        for(int id=0; id<table.size(); id++)
+            for(int p=0; p<players; p++)
+            {
+                long key = pieceKey(p, table.piece(id));
+                for(int i = Bits.nextSetBit(footprints, id * words, words, 0); i >= 0; i = Bits.nextSetBit(footprints, id * words, words, i + 1))
+                    key ^= cellKey(p, i);
+                placementKeys[id * players + p] = key;
+            }
+
+        mirrorKeys = new long[table.size() * players];
+        if(geo.isTransposeSymmetric())
+            for(int id=0; id<table.size(); id++)
+                for(int p=0; p<players; p++)
+                    mirrorKeys[id * players + p] = placementKey(id, p) ^ placementKey(table.transposed(id), p);
+    }
+
+    /**
+     * Returns the key of a player's piece on a cell
+     * @param player - the player
+     * @param cell - bit index of the cell
+     * @return - the key
+     */
+    public long cellKey(int player, int cell)
+    {
+        return cellKeys[player * bits + cell];
+    }
+
+    /**
+     * Returns the change a player's piece on a cell makes to the XOR of the hash of a position
+     * and the hash of its transpose
+     * @param geo - the board layout, which must be transpose symmetric
+     * @param player - the player
+     * @param cell - bit index of the cell
+     * @return - the key
+     */
+    public long mirrorCellKey(BoardGeometry geo, int player, int cell)
+    {
+        return cellKey(player, cell) ^ cellKey(player, geo.transpose(cell));
+    }
+
+    /**
+     * Returns the change a player putting down a placement makes to the XOR of the hash
+     * of a position and the hash of its transpose. The used piece and every other part
+     * of the hash are the same in both, so only the cells matter.
+     * @param id - placement id
+     * @param player - the player
+     * @return - the key, 0 when the board is not symmetric
+     */
+    public long mirrorKey(int id, int player)
+    {
+        return mirrorKeys[id * players + player];
+    }
+
+    /**
+     * Returns the key of a piece a player has used
+     * @param player - the player
+     * @param piece - index of the piece
+     * @return - the key
+     */
+    public long pieceKey(int player, int piece)
+    {
+        return pieceKeys[player * pieces + piece];
+    }
+
+    /**
+     * Returns the key of a player being the one to move
+     * @param player - the player
+     * @return - the key
+     */
+    public long turnKey(int player)
+    {
+        return turnKeys[player];
+    }
+
+    /**
+     * Returns the key of a player's skip flag being set
+     * @param player - the player
+     * @return - the key
+     */
+    public long skipKey(int player)
+    {
+        return skipKeys[player];
+    }
+
+    /**
+     * Returns the key of a player putting down a placement: the keys of its
+     * cells XORed with the key of its piece being used
+     * @param id - placement id
+     * @param player - the player
+     * @return - the key
+     */
+    public long placementKey(int id, int player)
+    {
+        return placementKeys[id * players + player];
+    }
+}